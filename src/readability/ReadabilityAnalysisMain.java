@@ -1,13 +1,17 @@
 package readability;
 
 import readability.subcommands.SubcommandClassify;
+import readability.subcommands.SubcommandPack;
+import readability.subcommands.SubcommandPredict;
 import readability.subcommands.SubcommandPreprocess;
+import readability.subcommands.SubcommandTrain;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 
 import java.util.concurrent.Callable;
 
-@Command(name = "subcommands", subcommands = {SubcommandPreprocess.class, SubcommandClassify.class})
+@Command(name = "subcommands", subcommands = {SubcommandPreprocess.class, SubcommandClassify.class, SubcommandPack.class,
+        SubcommandTrain.class, SubcommandPredict.class})
 public class ReadabilityAnalysisMain implements Callable<Integer> {
 
 
@@ -18,7 +22,7 @@ public static void main(String[] args) {
 
     @Override
     public Integer call() {
-        System.out.println("Subcommand needed: 'preprocess' or 'classify'");
+        System.out.println("Subcommand needed: 'preprocess', 'classify', 'pack', 'train' or 'predict'");
         return 0;
     }
 
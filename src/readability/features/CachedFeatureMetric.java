@@ -0,0 +1,97 @@
+package readability.features;
+
+import com.github.javaparser.ParseException;
+import readability.utils.FeatureCache;
+import readability.utils.ParseProfile;
+import readability.utils.SnippetContext;
+import readability.utils.SnippetLimits;
+
+import java.util.OptionalDouble;
+
+/**
+ * Looks up the values of another feature metric in a {@link FeatureCache} before computing them.
+ * On a cache hit the snippet is neither parsed nor analysed, so the node limit, which is checked on parsing,
+ * could not skip it. The values of metrics that parse are therefore cached apart for each node limit.
+ * That a snippet does not parse is cached as well, so a broken snippet is not parsed again on every run.
+ * Other failures, such as exceeding the time limit, are not cached.
+ */
+public class CachedFeatureMetric extends FeatureMetric {
+
+    private final FeatureMetric featureMetric;
+    private final FeatureCache cache;
+
+    /**
+     * The index of the metric in the cache, derived from its computation key and the node limit.
+     */
+    private final int cacheIndex;
+
+    public CachedFeatureMetric(FeatureMetric featureMetric, FeatureCache cache) {
+        this(featureMetric, cache, SnippetLimits.none());
+    }
+
+    /**
+     * @param limits the limits of the snippets the metric is computed for.
+     */
+    public CachedFeatureMetric(FeatureMetric featureMetric, FeatureCache cache, SnippetLimits limits) {
+        this.featureMetric = featureMetric;
+        this.cache = cache;
+        String metricKey = featureMetric.getComputationKey();
+        if (limits.limitsNodes() && featureMetric.getParseProfile() != ParseProfile.NONE) {
+            metricKey += ";maxNodes=" + limits.maxNodes();
+        }
+        this.cacheIndex = cache.indexOf(metricKey);
+    }
+
+    @Override
+    public double computeMetric(String codeSnippet) throws ParseException {
+        return computeMetricFrom(new SnippetContext(codeSnippet, getParseProfile()));
+    }
+
+    @Override
+    public double computeMetricFrom(SnippetContext context) throws ParseException {
+        byte[] contentHash = context.getContentHash();
+        OptionalDouble cached = cache.get(contentHash, cacheIndex);
+        if (cached.isPresent()) {
+            return cached.getAsDouble();
+        }
+        if (cache.hasFailed(contentHash, cacheIndex)) {
+            throw new ParseException("Failed to parse code snippet in an earlier run");
+        }
+
+        double value;
+        try {
+            value = featureMetric.computeMetricFrom(context);
+        } catch (ParseException e) {
+            cache.putFailure(contentHash, cacheIndex);
+            throw e;
+        } catch (RuntimeException e) {
+            // Most metrics rethrow a parse failure unchecked.
+            if (e.getCause() instanceof ParseException) {
+                cache.putFailure(contentHash, cacheIndex);
+            }
+            throw e;
+        }
+        cache.put(contentHash, cacheIndex, value);
+        return value;
+    }
+
+    @Override
+    public ParseProfile getParseProfile() {
+        return featureMetric.getParseProfile();
+    }
+
+    @Override
+    public int getVersion() {
+        return featureMetric.getVersion();
+    }
+
+    @Override
+    public String getComputationKey() {
+        return featureMetric.getComputationKey();
+    }
+
+    @Override
+    public String getIdentifier() {
+        return featureMetric.getIdentifier();
+    }
+}
@@ -1,11 +1,8 @@
 package readability.features;
 
 import com.github.javaparser.ParseException;
-import com.github.javaparser.ast.body.BodyDeclaration;
-import readability.utils.CyclomaticComplexityVisitor;
-import readability.utils.Parser;
-
-import java.util.concurrent.atomic.AtomicInteger;
+import readability.utils.ParseProfile;
+import readability.utils.SnippetContext;
 
 public class CyclomaticComplexityFeature extends FeatureMetric {
 
@@ -16,23 +13,26 @@ public class CyclomaticComplexityFeature extends FeatureMetric {
 
     @Override
     public double computeMetric(String codeSnippet) {
+        return computeMetricFrom(new SnippetContext(codeSnippet));
+    }
+
+    @Override
+    public double computeMetricFrom(SnippetContext context) {
         // Add a guard clause for null or empty snippets.
         // A blank snippet has a single path, so its complexity is 1.
-        if (codeSnippet == null || codeSnippet.isBlank()) {
+        if (context.isBlank()) {
             return BASE_COMPLEXITY;
         }
 
-        BodyDeclaration<?> ast;
+        // Call the helper method to get the number of decision points.
+        int decisionPoints;
         try {
-            ast = Parser.parseJavaSnippet(codeSnippet);
+            decisionPoints = countDecisionPoints(context);
         } catch (ParseException e) {
             // Re-throw as a runtime exception to simplify the method signature.
             throw new RuntimeException("Failed to parse code snippet", e);
         }
 
-        // Call the helper method to get the number of decision points.
-        int decisionPoints = countDecisionPoints(ast);
-
         // The final complexity is 1 (for the base path) + the number of decision points.
         return BASE_COMPLEXITY + decisionPoints;
     }
@@ -40,15 +40,19 @@ public double computeMetric(String codeSnippet) {
     /**
      * This private helper method isolates the visitor logic.
      * It is now testable on its own.
-     * @param ast The Abstract Syntax Tree to visit.
+     * The decision points come from the AST walk the snippet's context shares with the Halstead metric.
+     * @param context The analysis context of the snippet to visit.
      * @return The number of decision points found by the visitor.
+     * @throws ParseException if the code snippet could not be parsed.
      */
-    private int countDecisionPoints(BodyDeclaration<?> ast) {
-        CyclomaticComplexityVisitor visitor = new CyclomaticComplexityVisitor();
-        // The counter starts at 0 because the visitor only counts decision points.
-        AtomicInteger decisionPointCounter = new AtomicInteger(0);
-        ast.accept(visitor, decisionPointCounter);
-        return decisionPointCounter.get();
+    private int countDecisionPoints(SnippetContext context) throws ParseException {
+        return context.getCodeMetrics().getDecisionPoints();
+    }
+
+    @Override
+    public ParseProfile getParseProfile() {
+        // Decision points only need the AST, neither tokens nor comments.
+        return ParseProfile.LEAN;
     }
 
     @Override
@@ -2,7 +2,13 @@
 
 import com.github.javaparser.*;
 import com.github.javaparser.ast.body.BodyDeclaration;
+import readability.utils.ParseProfile;
+import readability.utils.SnippetContext;
 
+/**
+ * A metric computed on each code snippet. A single instance is shared by all threads of a preprocess run,
+ * so implementations must not keep any per-snippet state.
+ */
 public abstract class FeatureMetric {
 
     /**
@@ -12,6 +18,49 @@ public abstract class FeatureMetric {
      */
     public abstract double computeMetric(String codeSnippet) throws ParseException;
 
+    /**
+     * Computes the metric of the respective feature from a context shared by all metrics of the same snippet.
+     * Metrics working on the parsed code should override this method and take the AST from the context,
+     * such that a snippet is only parsed once.
+     *
+     * @param context the analysis context of the code snippet.
+     * @return feature metric value.
+     */
+    public double computeMetricFrom(SnippetContext context) throws ParseException {
+        return computeMetric(context.getCodeSnippet());
+    }
+
+    /**
+     * Returns the cheapest parse profile this metric can be computed with from a {@link SnippetContext}.
+     * Metrics that do not override this method get the full JavaParser configuration.
+     *
+     * @return the parse profile required by this metric.
+     */
+    public ParseProfile getParseProfile() {
+        return ParseProfile.FULL;
+    }
+
+    /**
+     * Returns the version of the metric's computation. It must be increased whenever the computed values change,
+     * so that values cached by earlier versions are no longer used.
+     *
+     * @return the version of this metric.
+     */
+    public int getVersion() {
+        return 1;
+    }
+
+    /**
+     * Returns a key that tells apart the ways of computing a metric's values. Metrics that compute the same column in
+     * different ways, which may disagree on the snippets they can analyse, must return different keys. The key
+     * decides which values cached or written by earlier runs can be reused, so it includes the version.
+     *
+     * @return the identifier, computation mode and version of this metric.
+     */
+    public String getComputationKey() {
+        return getIdentifier() + "@" + getVersion();
+    }
+
     /**
      * Returns a unique identifier for the concrete FeatureMetric.
      *
@@ -1,12 +1,10 @@
 package readability.features;
 
 import com.github.javaparser.ParseException;
-import com.github.javaparser.ast.body.BodyDeclaration;
-import readability.utils.OperandVisitor;
-import readability.utils.OperatorVisitor;
-import readability.utils.Parser;
-
-import java.util.Map;
+import readability.utils.CodeMetricsVisitor;
+import readability.utils.ParseProfile;
+import readability.utils.SnippetContext;
+import readability.utils.StringCounter;
 
 public class HalsteadVolumeFeature extends FeatureMetric {
 
@@ -14,33 +12,33 @@ private record HalsteadMetrics(int uniqueOperators, int uniqueOperands, int tota
 
     @Override
     public double computeMetric(String codeSnippet) {
-        if (codeSnippet == null || codeSnippet.isBlank()) {
+        return computeMetricFrom(new SnippetContext(codeSnippet));
+    }
+
+    @Override
+    public double computeMetricFrom(SnippetContext context) {
+        if (context.isBlank()) {
             return 0.0;
         }
 
-        BodyDeclaration<?> parsedCode;
+        CodeMetricsVisitor codeMetrics;
         try {
-            parsedCode = Parser.parseJavaSnippet(codeSnippet);
+            codeMetrics = context.getCodeMetrics();
         } catch (ParseException e) {
             throw new RuntimeException("Failed to parse code snippet", e);
         }
 
-        HalsteadMetrics metrics = collectMetricsFrom(parsedCode);
+        HalsteadMetrics metrics = collectMetricsFrom(codeMetrics);
         return calculateVolume(metrics);
     }
 
-    private HalsteadMetrics collectMetricsFrom(BodyDeclaration<?> ast) {
-        OperandVisitor operandVisitor = new OperandVisitor();
-        ast.accept(operandVisitor, null);
-        Map<String, Integer> operandCounts = operandVisitor.getOperandsPerMethod();
+    private HalsteadMetrics collectMetricsFrom(CodeMetricsVisitor codeMetrics) {
+        StringCounter operandCounts = codeMetrics.getOperandCounts();
         int uniqueOperands = operandCounts.size();
-        int totalOperands = operandCounts.values().stream().mapToInt(Integer::intValue).sum();
+        int totalOperands = operandCounts.total();
 
-        OperatorVisitor operatorVisitor = new OperatorVisitor();
-        ast.accept(operatorVisitor, null);
-        Map<OperatorVisitor.OperatorType, Integer> operatorCounts = operatorVisitor.getOperatorsPerMethod();
-        int uniqueOperators = operatorCounts.size();
-        int totalOperators = operatorCounts.values().stream().mapToInt(Integer::intValue).sum();
+        int uniqueOperators = codeMetrics.getUniqueOperators();
+        int totalOperators = codeMetrics.getTotalOperators();
 
         return new HalsteadMetrics(uniqueOperators, uniqueOperands, totalOperators, totalOperands);
     }
@@ -56,6 +54,12 @@ private double calculateVolume(HalsteadMetrics metrics) {
         return programLength * (Math.log(vocabularySize) / Math.log(2));
     }
 
+    @Override
+    public ParseProfile getParseProfile() {
+        // Operands and operators only need the AST, neither tokens nor comments.
+        return ParseProfile.LEAN;
+    }
+
     @Override
     public String getIdentifier() {
         return "HalsteadVolume";
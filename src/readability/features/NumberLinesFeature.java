@@ -1,6 +1,9 @@
 
 package readability.features;
 
+import readability.utils.ParseProfile;
+import readability.utils.SnippetContext;
+
 public class NumberLinesFeature extends FeatureMetric {
 
     /**
@@ -11,12 +14,43 @@ public class NumberLinesFeature extends FeatureMetric {
      */
     @Override
     public double computeMetric(String codeSnippet) {
+        return computeMetricFrom(new SnippetContext(codeSnippet));
+    }
+
+    @Override
+    public double computeMetricFrom(SnippetContext context) {
+        String codeSnippet = context.getCodeSnippet();
         if (codeSnippet == null || codeSnippet.isEmpty()) {
             return 0;
         }
-        String[] lines = codeSnippet.split("\\r?\\n");
-        return lines.length;
 
+        // Trailing empty lines are not counted, just like String.split("\\r?\\n") drops them.
+        int[] lineOffsets = context.getLineOffsets();
+        for (int line = lineOffsets.length - 1; line >= 0; line--) {
+            if (!isEmptyLine(codeSnippet, lineOffsets, line)) {
+                return line + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isEmptyLine(String codeSnippet, int[] lineOffsets, int line) {
+        int start = lineOffsets[line];
+        if (line == lineOffsets.length - 1) {
+            return start == codeSnippet.length();
+        }
+        // The line ends with '\n', optionally preceded by '\r'.
+        int end = lineOffsets[line + 1] - 1;
+        if (end > start && codeSnippet.charAt(end - 1) == '\r') {
+            end--;
+        }
+        return end == start;
+    }
+
+    @Override
+    public ParseProfile getParseProfile() {
+        // Lines are counted on the raw snippet.
+        return ParseProfile.NONE;
     }
 
     @Override
@@ -3,69 +3,92 @@
 import com.github.javaparser.JavaToken;
 import com.github.javaparser.ParseException;
 import com.github.javaparser.TokenRange;
-import com.github.javaparser.ast.body.BodyDeclaration;
-import readability.utils.Parser;
+import readability.utils.Lexer;
+import readability.utils.ParseProfile;
+import readability.utils.SnippetContext;
+import readability.utils.TokenHistogram;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 
 public class TokenEntropyFeature extends FeatureMetric {
 
+    /**
+     * If set, the tokens are taken from JavaParser's token manager alone and the snippet is never parsed.
+     * The entropy is the same as with a full parse, but syntax errors are no longer reported.
+     */
+    private final boolean lexerOnly;
+
+    /**
+     * The histogram of the snippet currently processed by each thread, reset for every snippet,
+     * as the metric itself is shared by all threads.
+     */
+    private static final ThreadLocal<TokenHistogram> HISTOGRAMS = ThreadLocal.withInitial(TokenHistogram::new);
+
+    public TokenEntropyFeature() {
+        this(false);
+    }
+
+    public TokenEntropyFeature(boolean lexerOnly) {
+        this.lexerOnly = lexerOnly;
+    }
+
     @Override
     public double computeMetric(String codeSnippet) {
+        return computeMetricFrom(new SnippetContext(codeSnippet));
+    }
+
+    @Override
+    public double computeMetricFrom(SnippetContext context) {
         // Guard clause for invalid input - easy to test.
-        if (codeSnippet == null || codeSnippet.isBlank()) {
+        if (context.isBlank()) {
             return 0.0;
         }
 
-        Map<String, Integer> freqMap = calculateTokenFrequencies(codeSnippet);
-
-        return calculateEntropyFromFrequencies(freqMap);
+        TokenHistogram histogram = HISTOGRAMS.get();
+        histogram.reset();
+        countTokens(context, histogram);
+        return histogram.entropy();
     }
 
 
-    private Map<String, Integer> calculateTokenFrequencies(String codeSnippet) {
-        BodyDeclaration<?> parsedCode;
+    private void countTokens(SnippetContext context, TokenHistogram histogram) {
+        if (lexerOnly) {
+            Lexer.forEachToken(context.getCodeSnippet(), histogram::add);
+            return;
+        }
+
+        Optional<TokenRange> tokenRange;
         try {
-            parsedCode = Parser.parseJavaSnippet(codeSnippet);
+            tokenRange = context.getTokenRange();
         } catch (ParseException e) {
             throw new RuntimeException("Failed to parse code snippet", e);
         }
 
-        Optional<TokenRange> tokenRange = parsedCode.getTokenRange();
         if (tokenRange.isEmpty()) {
-            return Collections.emptyMap();
+            return;
         }
 
-        Map<String, Integer> freqMap = new HashMap<>();
         for (JavaToken token : tokenRange.get()) {
-            String text = token.getText();
-            freqMap.merge(text, 1, Integer::sum);
+            histogram.add(token.getKind(), token.getText());
         }
-        return freqMap;
     }
 
+    @Override
+    public int getVersion() {
+        // Version 2 sums the entropy in a different order, which may change the last bits of the value.
+        return 2;
+    }
 
-    private double calculateEntropyFromFrequencies(Map<String, Integer> freqMap) {
-        if (freqMap.isEmpty()) {
-            return 0.0;
-        }
-
-        int totalTokens = freqMap.values().stream().mapToInt(Integer::intValue).sum();
-        if (totalTokens == 0) {
-            return 0.0;
-        }
+    @Override
+    public String getComputationKey() {
+        // Both modes write the TokenEntropy column, but only the lexer computes values for snippets that do not parse.
+        return lexerOnly ? getIdentifier() + "-lexer@" + getVersion() : super.getComputationKey();
+    }
 
-        double entropy = 0.0;
-        for (Integer freq : freqMap.values()) {
-            double p = (double) freq / totalTokens;
-            if (p > 0) {
-                entropy += p * (Math.log(p) / Math.log(2));
-            }
-        }
-        return -entropy;
+    @Override
+    public ParseProfile getParseProfile() {
+        // The entropy is computed over the token range of the parsed code, unless only the lexer runs.
+        return lexerOnly ? ParseProfile.NONE : ParseProfile.TOKENS;
     }
 
     @Override
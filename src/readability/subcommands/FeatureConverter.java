@@ -0,0 +1,48 @@
+package readability.subcommands;
+
+import readability.features.CyclomaticComplexityFeature;
+import readability.features.FeatureMetric;
+import readability.features.HalsteadVolumeFeature;
+import readability.features.NumberLinesFeature;
+import readability.features.TokenEntropyFeature;
+import picocli.CommandLine.ITypeConverter;
+
+import java.util.List;
+
+/**
+ * Converts supplied cli parameters to the respective {@link FeatureMetric}.
+ */
+class FeatureConverter implements ITypeConverter<FeatureMetric> {
+    @Override
+    public FeatureMetric convert(String metric) {
+        return switch (metric.toLowerCase()) {
+            case "lines" -> new NumberLinesFeature();
+            case "h_volume" -> new HalsteadVolumeFeature();
+            case "token_entropy" -> new TokenEntropyFeature();
+            case "token_entropy_lexer" -> new TokenEntropyFeature(true);
+            case "cyclomatic_complexity" -> new CyclomaticComplexityFeature();
+            default -> throw new IllegalArgumentException("The metric '" + metric + "' is not a valid option.");
+        };
+    }
+
+    /**
+     * Finds the feature metric that computes the column with the given identifier. Of the two token entropy metrics,
+     * the parsing one is taken, which preprocess computes by default. Both compute the same values for snippets that
+     * parse, but only the lexer-only one computes values for snippets that do not. A model trained on the lexer-only
+     * column therefore gets no prediction for such snippets instead of one from values the parsing column never had.
+     *
+     * @param identifier the identifier of the feature metric, as written in the csv header.
+     * @return the feature metric.
+     * @throws IllegalArgumentException if no feature metric has the identifier.
+     */
+    static FeatureMetric forIdentifier(String identifier) {
+        FeatureConverter converter = new FeatureConverter();
+        for (String metric : List.of("lines", "h_volume", "token_entropy", "cyclomatic_complexity")) {
+            FeatureMetric featureMetric = converter.convert(metric);
+            if (featureMetric.getIdentifier().equals(identifier)) {
+                return featureMetric;
+            }
+        }
+        throw new IllegalArgumentException("No feature metric computes '" + identifier + "'.");
+    }
+}
@@ -23,9 +23,11 @@ public class SubcommandClassify implements Callable<Integer> {
 
     private File data;
 
+    private int threads = Runtime.getRuntime().availableProcessors();
+
     @Option(
             names = {"-d", "--data"},
-            description = "The data .csv file to train the model on.",
+            description = "The data .csv or .bin file to train the model on.",
             required = true
     )
     public void setDataFile(File dataFile) {
@@ -35,10 +37,27 @@ public void setDataFile(File dataFile) {
         data = dataFile;
     }
 
+    @Option(
+            names = {"--threads"},
+            description = "The number of cross-validation folds trained in parallel (default: number of available cores)"
+    )
+    public void setThreads(final int threads) {
+        if (threads < 1) {
+            throw new ParameterException(spec.commandLine(), "The number of threads must be at least 1.");
+        }
+        this.threads = threads;
+    }
+
+    @Option(
+            names = {"--summary"},
+            description = "Print a summary of the attributes of the loaded dataset"
+    )
+    private boolean summary;
+
     public Integer call() {
         try {
-            Instances dataset = Classify.loadDataset(data);
-            Evaluation eval = Classify.trainAndEvaluate(dataset);
+            Instances dataset = Classify.loadDataset(data, summary);
+            Evaluation eval = Classify.trainAndEvaluate(dataset, threads);
             printResults(eval);
             return 0;
         } catch (Exception e) {
@@ -0,0 +1,77 @@
+package readability.subcommands;
+
+import com.google.common.io.Files;
+import readability.utils.SnippetPack;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+@Command(
+        name = "pack",
+        description = "Packs a directory of java snippet files into a single file that preprocess can read"
+)
+public class SubcommandPack implements Callable<Integer> {
+
+    @Spec
+    CommandSpec spec;
+
+    private Path sourceDir;
+    private File targetFile;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(
+            names = {"-s", "--source"},
+            description = "The directory containing java snippet (.jsnp) files, including its subdirectories",
+            required = true
+    )
+    public void setSourceDirectory(final File sourceDir) {
+        if (!sourceDir.exists() || !sourceDir.isDirectory()) {
+            throw new ParameterException(spec.commandLine(), "Source directory does not exist.");
+        }
+        this.sourceDir = sourceDir.toPath();
+    }
+
+    @Option(
+            names = {"-t", "--target"},
+            description = "The target file where the packed snippets will be saved",
+            required = true
+    )
+    public void setTargetFile(final File targetFile) {
+        if (!targetFile.getAbsoluteFile().getParentFile().isDirectory()) {
+            throw new ParameterException(spec.commandLine(), "Target directory does not exist.");
+        }
+        if (!Files.getFileExtension(targetFile.getName()).equals("pack")) {
+            throw new ParameterException(spec.commandLine(), "Target file must end with a .pack suffix");
+        }
+        this.targetFile = targetFile;
+    }
+
+    @Option(
+            names = {"--threads"},
+            description = "The number of threads listing directories (default: number of available cores)"
+    )
+    public void setThreads(final int threads) {
+        if (threads < 1) {
+            throw new ParameterException(spec.commandLine(), "The number of threads must be at least 1.");
+        }
+        this.threads = threads;
+    }
+
+    public Integer call() {
+        try {
+            int snippets = SnippetPack.write(sourceDir, targetFile.toPath(), threads);
+            System.out.println("Packed " + snippets + " snippets into " + targetFile);
+        } catch (IOException e) {
+            System.out.println("Encountered error while packing input files: " + e.getMessage());
+            return 1;
+        }
+        return 0;
+    }
+}
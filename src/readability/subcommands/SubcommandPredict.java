@@ -0,0 +1,183 @@
+package readability.subcommands;
+
+import readability.features.FeatureMetric;
+import readability.utils.Classify;
+import readability.utils.FixedPointFormat;
+import readability.utils.LogisticScorer;
+import readability.utils.Preprocess;
+import readability.utils.PreprocessOptions;
+import readability.utils.ReadabilityModel;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+@Command(
+        name = "predict",
+        description = "Classifies the readability of java snippets with a model saved by train"
+)
+public class SubcommandPredict implements Callable<Integer> {
+
+    @Spec
+    CommandSpec spec;
+
+    private File modelFile;
+    private Path sourceDir;
+    private File data;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int precision = 2;
+
+    @Option(
+            names = {"-m", "--model"},
+            description = "The model file saved by train, or the .coef file its coefficients were exported to",
+            required = true
+    )
+    public void setModelFile(File modelFile) {
+        if (!modelFile.exists() || !modelFile.isFile()) {
+            throw new ParameterException(spec.commandLine(), "The model file does not exist or is not a file.");
+        }
+        this.modelFile = modelFile;
+    }
+
+    @Option(
+            names = {"-s", "--source"},
+            description = "The directory containing java snippet (.jsnp) files, including its subdirectories, "
+                    + "or a .zip, .jar, .tar, .tar.gz, .tgz or .pack archive containing them"
+    )
+    public void setSourceDirectory(final File sourceDir) {
+        if (!(sourceDir.isFile() && Preprocess.isArchive(sourceDir.toPath())) && !sourceDir.isDirectory()) {
+            throw new ParameterException(spec.commandLine(), "Source directory does not exist.");
+        }
+        this.sourceDir = sourceDir.toPath();
+    }
+
+    @Option(
+            names = {"-d", "--data"},
+            description = "A .csv or .bin file written by preprocess whose feature values are classified"
+    )
+    public void setDataFile(File dataFile) {
+        if (!dataFile.exists() || !dataFile.isFile()) {
+            throw new ParameterException(spec.commandLine(), "The data file does not exist or is not a file.");
+        }
+        data = dataFile;
+    }
+
+    @Option(
+            names = {"--threads"},
+            description = "The number of threads computing the feature metrics (default: number of available cores)"
+    )
+    public void setThreads(final int threads) {
+        if (threads < 1) {
+            throw new ParameterException(spec.commandLine(), "The number of threads must be at least 1.");
+        }
+        this.threads = threads;
+    }
+
+    @Option(
+            names = {"--precision"},
+            description = "The number of decimal places of the probabilities (default: 2)"
+    )
+    public void setPrecision(final int precision) {
+        if (precision < 0) {
+            throw new ParameterException(spec.commandLine(), "The precision must not be negative.");
+        }
+        this.precision = precision;
+    }
+
+    public Integer call() {
+        if ((sourceDir == null) == (data == null)) {
+            throw new ParameterException(spec.commandLine(), "Either a source directory or a data file is needed.");
+        }
+        try {
+            Path file = modelFile.toPath();
+            LogisticScorer scorer = LogisticScorer.isCoefficientFile(file)
+                    ? LogisticScorer.load(file)
+                    : ReadabilityModel.load(file).getScorer();
+            if (sourceDir != null) {
+                predictSnippets(scorer);
+            } else {
+                predictDataset(scorer);
+            }
+            return 0;
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Computes the feature metrics the model was trained on for every snippet and prints each prediction
+     * as soon as its row is computed.
+     */
+    private void predictSnippets(LogisticScorer scorer) throws IOException {
+        List<FeatureMetric> metrics = new ArrayList<>();
+        for (String identifier : scorer.getFeatureIdentifiers()) {
+            metrics.add(FeatureConverter.forIdentifier(identifier));
+        }
+        PreprocessOptions options = PreprocessOptions.defaults().withThreads(threads);
+        printHeader();
+        Preprocess.collectFeatureRows(sourceDir, null, row -> printPrediction(scorer, row.fileName(), row.values()),
+                metrics, options);
+    }
+
+    /**
+     * Classifies the rows of a preprocessed dataset, taking the feature values the model needs by their column names.
+     */
+    private void predictDataset(LogisticScorer scorer) throws IOException {
+        Instances dataset = Classify.loadDataset(data);
+        List<String> identifiers = scorer.getFeatureIdentifiers();
+        int[] columns = new int[identifiers.size()];
+        for (int i = 0; i < columns.length; i++) {
+            Attribute attribute = dataset.attribute(identifiers.get(i));
+            if (attribute == null || !attribute.isNumeric()) {
+                throw new IOException("The data file has no numeric column " + identifiers.get(i) + ".");
+            }
+            columns[i] = attribute.index();
+        }
+        Attribute identifier = dataset.attribute(Classify.ID_ATTRIBUTE);
+        printHeader();
+
+        double[] values = new double[columns.length];
+        for (int row = 0; row < dataset.size(); row++) {
+            Instance instance = dataset.get(row);
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = instance.value(columns[i]);
+            }
+            String fileName = identifier != null ? instance.stringValue(identifier) : String.valueOf(row + 1);
+            printPrediction(scorer, fileName, values);
+        }
+    }
+
+    private static void printHeader() {
+        System.out.println("File,Probability,Readable");
+    }
+
+    /**
+     * Prints the csv row of one prediction. Snippets with missing feature values, such as skipped ones,
+     * are not classified and get "?" instead.
+     */
+    private void printPrediction(LogisticScorer scorer, String fileName, double[] values) {
+        StringBuilder prediction = new StringBuilder(fileName);
+        for (double value : values) {
+            if (Double.isNaN(value)) {
+                System.out.println(prediction.append(",?,?"));
+                return;
+            }
+        }
+        double probability = scorer.probabilityReadable(values);
+        FixedPointFormat.append(prediction.append(','), probability, precision);
+        prediction.append(',').append(scorer.isReadable(probability) ? ReadabilityModel.READABLE_LABEL : "N");
+        System.out.println(prediction);
+    }
+}
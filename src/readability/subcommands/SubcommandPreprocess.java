@@ -4,14 +4,23 @@
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 import readability.features.*;
+import readability.utils.FeatureCache;
+import readability.utils.FeatureMatrix;
 import readability.utils.Preprocess;
+import readability.utils.PreprocessOptions;
+import readability.utils.SnippetLimits;
+import readability.utils.SnippetManifest;
+import readability.utils.TruthScores;
 import picocli.CommandLine.*;
 import picocli.CommandLine.Model.CommandSpec;
 
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 
@@ -29,13 +38,114 @@ public class SubcommandPreprocess implements Callable<Integer> {
     private Path sourceDir;
     private File truth;
     private File targetFile;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int precision = 2;
+    private File cacheFile;
+    private int cacheSize = 1_000_000;
+    private SnippetLimits limits = SnippetLimits.none();
+
+    @Option(
+            names = {"--precision"},
+            description = "The number of decimal places of the feature values (default: 2)"
+    )
+    public void setPrecision(final int precision) {
+        if (precision < 0) {
+            throw new ParameterException(spec.commandLine(), "The precision must not be negative.");
+        }
+        this.precision = precision;
+    }
+
+    @Option(
+            names = {"--cache"},
+            description = "A file caching feature values across runs by snippet content. Created if it does not exist."
+    )
+    public void setCacheFile(final File cacheFile) {
+        if (cacheFile.isDirectory() || !cacheFile.getAbsoluteFile().getParentFile().isDirectory()) {
+            throw new ParameterException(spec.commandLine(), "Cache file must be a file in an existing directory.");
+        }
+        this.cacheFile = cacheFile;
+    }
+
+    @Option(
+            names = {"--cache-size"},
+            description = "The maximum number of feature values kept in the cache (default: 1000000)"
+    )
+    public void setCacheSize(final int cacheSize) {
+        if (cacheSize < 1) {
+            throw new ParameterException(spec.commandLine(), "The cache size must be at least 1.");
+        }
+        this.cacheSize = cacheSize;
+    }
+
+    @Option(
+            names = {"--max-snippet-size"},
+            description = "Skip snippets longer than this number of characters, writing a row of missing values instead"
+    )
+    public void setMaxSnippetSize(final int maxCharacters) {
+        if (maxCharacters < 1) {
+            throw new ParameterException(spec.commandLine(), "The maximum snippet size must be at least 1.");
+        }
+        this.limits = limits.withMaxCharacters(maxCharacters);
+    }
+
+    @Option(
+            names = {"--max-snippet-time"},
+            description = "Skip snippets whose features take longer than this number of milliseconds to compute, "
+                    + "writing a row of missing values instead. Checked between metrics and while parsing and walking the syntax tree"
+    )
+    public void setMaxSnippetTime(final long maxMillis) {
+        if (maxMillis < 1) {
+            throw new ParameterException(spec.commandLine(), "The maximum snippet time must be at least 1.");
+        }
+        this.limits = limits.withMaxMillis(maxMillis);
+    }
+
+    @Option(
+            names = {"--max-ast-nodes"},
+            description = "Skip snippets whose syntax tree has more than this number of nodes, "
+                    + "writing a row of missing values instead"
+    )
+    public void setMaxAstNodes(final int maxNodes) {
+        if (maxNodes < 1) {
+            throw new ParameterException(spec.commandLine(), "The maximum number of AST nodes must be at least 1.");
+        }
+        this.limits = limits.withMaxNodes(maxNodes);
+    }
+
+    @Option(
+            names = {"--truth-aggregate"},
+            defaultValue = "MEAN",
+            description = "How the ratings of a snippet are combined into its truth score: ${COMPLETION-CANDIDATES} "
+                    + "(default: ${DEFAULT-VALUE}). The mean is taken from the 'Mean' row of the ground truth if present"
+    )
+    private TruthScores.Aggregate truthAggregate;
+
+    @Option(
+            names = {"--incremental"},
+            description = "Only recompute the rows of new or modified snippets and merge them into the existing target file"
+    )
+    private boolean incremental;
+
+    @Option(
+            names = {"--echo"},
+            negatable = true,
+            defaultValue = "true",
+            fallbackValue = "true",
+            description = "Whether to also print the generated csv to the console (default: true)"
+    )
+    private boolean echo;
 
     @Option(
             names = {"-s", "--source"},
-            description = "The directory containing java snippet (.jsnp) files",
+            description = "The directory containing java snippet (.jsnp) files, including its subdirectories, "
+                    + "or a .zip, .jar, .tar, .tar.gz, .tgz or .pack archive containing them",
             required = true
     )
     public void setSourceDirectory(final File sourceDir) {
+        if (sourceDir.isFile() && Preprocess.isArchive(sourceDir.toPath())) {
+            this.sourceDir = sourceDir.toPath();
+            return;
+        }
         if (!sourceDir.exists() || !sourceDir.isDirectory()) {
             throw new ParameterException(spec.commandLine(), "Source directory does not exist.");
         }
@@ -56,22 +166,35 @@ public void setTruth(final File truth) {
 
     @Option(
             names = {"-t", "--target"},
-            description = {"The target file where the preprocessed data will be saved"},
+            description = {"The target file where the preprocessed data will be saved, either a .csv file "
+                    + "or a .bin file holding the feature values in a binary columnar format at full precision"},
             required = true
     )
     public void setTargetFile(final File targetFile) {
         if (!targetFile.getParentFile().isDirectory()) {
             throw new ParameterException(spec.commandLine(), "Target directory does not exist.");
         }
-        if (!Files.getFileExtension(targetFile.getName()).equals("csv")) {
-            throw new ParameterException(spec.commandLine(), "Target file must end with a .csv suffix");
+        String extension = Files.getFileExtension(targetFile.getName());
+        if (!extension.equals("csv") && !extension.equals("bin")) {
+            throw new ParameterException(spec.commandLine(), "Target file must end with a .csv or .bin suffix");
         }
         this.targetFile = targetFile;
     }
 
+    @Option(
+            names = {"--threads"},
+            description = "The number of threads computing the feature metrics (default: number of available cores)"
+    )
+    public void setThreads(final int threads) {
+        if (threads < 1) {
+            throw new ParameterException(spec.commandLine(), "The number of threads must be at least 1.");
+        }
+        this.threads = threads;
+    }
+
     @Parameters(
             paramLabel = "featureMetrics",
-            description = "The The feature metrics to be used: [LINES, TOKEN_ENTROPY, H_VOLUME, CYCLOMATIC_COMPLEXITY]",
+            description = "The The feature metrics to be used: [LINES, TOKEN_ENTROPY, TOKEN_ENTROPY_LEXER, H_VOLUME, CYCLOMATIC_COMPLEXITY]",
             arity = "1...",
             converter = FeatureConverter.class
     )
@@ -79,26 +202,180 @@ public void setTargetFile(final File targetFile) {
 
 
     public Integer call() {
-        StringBuilder csv = new StringBuilder();
-        generateCSVHeader(csv, featureMetrics);
+        if (incremental && Preprocess.isArchive(sourceDir)) {
+            throw new ParameterException(spec.commandLine(), "Incremental runs need a source directory, not an archive.");
+        }
+        boolean binary = FeatureMatrix.isFeatureMatrix(targetFile.toPath());
+        if (incremental && binary) {
+            throw new ParameterException(spec.commandLine(), "Incremental runs need a .csv target file.");
+        }
+        FeatureCache cache = null;
+        if (cacheFile != null) {
+            try {
+                cache = FeatureCache.open(cacheFile.toPath(), cacheSize);
+            } catch (IOException e) {
+                System.out.println("Encountered error while reading the feature cache: " + e.getMessage());
+                return 1;
+            }
+        }
+        int exitCode = preprocess(cache == null ? featureMetrics : withCache(featureMetrics, cache, limits), binary);
+        // The values computed before a failure are valid all the same, so the cache is saved either way.
+        if (cache != null) {
+            try {
+                cache.close();
+            } catch (IOException e) {
+                System.out.println("Encountered error while saving the feature cache: " + e.getMessage());
+                return 1;
+            }
+        }
+        return exitCode;
+    }
+
+    /**
+     * Computes the rows of all snippets and writes them to the target file.
+     *
+     * @param metrics the feature metrics to compute, possibly taking their values from a cache.
+     * @param binary  whether the target file is a feature matrix instead of a csv.
+     * @return the exit code of the subcommand.
+     */
+    private int preprocess(List<FeatureMetric> metrics, boolean binary) {
         try {
-            Preprocess.collectCSVBody(sourceDir, truth, csv, featureMetrics);
+            if (binary) {
+                writeMatrixToFile(metrics);
+            } else if (incremental) {
+                try (SnippetManifest manifest = openManifest()) {
+                    writeCSVToFile(metrics, manifest);
+                    manifest.save();
+                }
+            } else {
+                writeCSVToFile(metrics, null);
+            }
+        } catch (TargetWriteException e) {
+            System.out.println("Encountered error while writing the target file: " + e.getMessage());
+            return 1;
         } catch (IOException e) {
             System.out.println("Encountered error while parsing input files: " + e.getMessage());
             return 1;
         }
-        writeCSVToFile(csv.toString());
-        System.out.println(csv);
+        if (echo && System.out.checkError()) {
+            System.out.println("Encountered error while echoing the csv to the console.");
+            return 1;
+        }
         return 0;
     }
 
+    /**
+     * Opens the manifest of the previous incremental run, which is kept next to the target file.
+     * The unchanged rows are read from the target file while the new csv is written, see {@link #writeCSVToFile}.
+     *
+     * @return the manifest of the previous run.
+     * @throws IOException if the manifest or the previous target file could not be read.
+     */
+    private SnippetManifest openManifest() throws IOException {
+        Path manifestFile = new File(targetFile.getAbsolutePath() + ".manifest").toPath();
+        String settings = SnippetManifest.settingsOf(featureMetrics, preprocessOptions(), truth);
+        return SnippetManifest.open(manifestFile, sourceDir, settings, targetFile.toPath());
+    }
+
+    /**
+     * Computes the csv and streams it into the target file as the rows are computed,
+     * so the csv is never held in memory. In an incremental run, the previous csv is read while the rows are
+     * computed, so the new csv is written to a temporary file that replaces the target file once it is complete.
+     *
+     * @param metrics  the feature metrics to compute.
+     * @param manifest the manifest of the previous run for an incremental run, null otherwise.
+     * @throws TargetWriteException if the csv could not be written.
+     * @throws IOException if the input files could not be read.
+     */
+    private void writeCSVToFile(List<FeatureMetric> metrics, SnippetManifest manifest) throws IOException {
+        File target = targetFile.getAbsoluteFile();
+        if (manifest == null) {
+            writeCSV(target, metrics, null);
+            return;
+        }
+
+        File temporary;
+        try {
+            temporary = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+        } catch (IOException e) {
+            throw new TargetWriteException(targetFile, e);
+        }
+        try {
+            writeCSV(temporary, metrics, manifest);
+            try {
+                java.nio.file.Files.move(temporary.toPath(), target.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new TargetWriteException(targetFile, e);
+            }
+        } finally {
+            java.nio.file.Files.deleteIfExists(temporary.toPath());
+        }
+    }
+
+    private void writeCSV(File csvFile, List<FeatureMetric> metrics, SnippetManifest manifest) throws IOException {
+        try (TargetWriter writer = TargetWriter.open(csvFile)) {
+            Appendable csv = echo ? new EchoingAppendable(writer, System.out) : writer;
+            generateCSVHeader(csv, metrics);
+            Preprocess.collectCSVBody(sourceDir, truth, csv, metrics, preprocessOptions(), manifest);
+        }
+    }
+
+    /**
+     * Computes the feature matrix and writes it to the target file once all rows are computed.
+     * The matrix is not echoed, as it is not meant to be read by humans.
+     *
+     * @param metrics the feature metrics to compute.
+     * @throws TargetWriteException if the matrix could not be written.
+     * @throws IOException if the input files could not be read.
+     */
+    private void writeMatrixToFile(List<FeatureMetric> metrics) throws IOException {
+        List<String> identifiers = new ArrayList<>(metrics.size());
+        for (FeatureMetric featureMetric : metrics) {
+            identifiers.add(featureMetric.getIdentifier());
+        }
+        FeatureMatrix.Builder matrix = new FeatureMatrix.Builder(identifiers);
+        Preprocess.collectFeatureMatrix(sourceDir, truth, matrix, metrics, preprocessOptions());
+        try {
+            matrix.write(targetFile.toPath());
+        } catch (IOException e) {
+            throw new TargetWriteException(targetFile, e);
+        }
+    }
+
+    private PreprocessOptions preprocessOptions() {
+        return PreprocessOptions.defaults()
+                .withThreads(threads)
+                .withPrecision(precision)
+                .withTruthAggregate(truthAggregate)
+                .withLimits(limits);
+    }
+
+    /**
+     * Wraps the given feature metrics such that their values are taken from the cache where possible.
+     *
+     * @param featureMetrics the list of specified features via the cli.
+     * @param cache          the cache of feature values from earlier runs.
+     * @param limits         the limits of the snippets.
+     * @return the cached feature metrics in the same order.
+     */
+    private static List<FeatureMetric> withCache(List<FeatureMetric> featureMetrics, FeatureCache cache,
+                                                 SnippetLimits limits) {
+        List<FeatureMetric> cachedMetrics = new ArrayList<>(featureMetrics.size());
+        for (FeatureMetric featureMetric : featureMetrics) {
+            cachedMetrics.add(new CachedFeatureMetric(featureMetric, cache, limits));
+        }
+        return cachedMetrics;
+    }
+
     /**
      * Generates the csv header represented by [SnippetFile, feature1, feature2, ...]
      *
-     * @param csv            the builder for the csv.
+     * @param csv            the output the csv is written to.
      * @param featureMetrics the list of specified features via the cli.
+     * @throws IOException if the header could not be written.
      */
-    private static void generateCSVHeader(StringBuilder csv, List<FeatureMetric> featureMetrics) {
+    private static void generateCSVHeader(Appendable csv, List<FeatureMetric> featureMetrics) throws IOException {
         csv.append("File");
         for (FeatureMetric featureMetric : featureMetrics) {
             csv.append(String.format(",%s", featureMetric.getIdentifier()));
@@ -107,33 +384,112 @@ private static void generateCSVHeader(StringBuilder csv, List<FeatureMetric> fea
         csv.append(System.lineSeparator());
     }
 
-    /**
-     * Writes the generated csv String to the target file.
-     *
-     * @param csv the generated csv String
-     */
-    private void writeCSVToFile(String csv) {
-        try (BufferedWriter writer = Files.newWriter(new File(targetFile.getAbsolutePath()), Charsets.UTF_8)) {
-            writer.write(csv);
-        } catch (IOException e) {
-            System.out.println(e.getMessage());
-        }
+}
+
+/**
+ * Writes everything appended to it to the target file and echoes it to the console.
+ */
+class EchoingAppendable implements Appendable {
+
+    private final Appendable target;
+    private final Appendable console;
+
+    EchoingAppendable(Appendable target, Appendable console) {
+        this.target = target;
+        this.console = console;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        target.append(csq);
+        console.append(csq);
+        return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        target.append(csq, start, end);
+        console.append(csq, start, end);
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        target.append(c);
+        console.append(c);
+        return this;
     }
+}
+
+/**
+ * Thrown when the target file could not be written, as opposed to an input file that could not be read.
+ */
+class TargetWriteException extends IOException {
 
+    private static final long serialVersionUID = 1L;
+
+    TargetWriteException(File targetFile, IOException cause) {
+        super(targetFile + ": " + cause.getMessage(), cause);
+    }
 }
 
 /**
- * Converts supplied cli parameters to the respective {@link FeatureMetric}.
+ * Writes the csv to the target file, reporting every failure as a {@link TargetWriteException}.
  */
-class  FeatureConverter implements ITypeConverter<FeatureMetric> {
+class TargetWriter implements Appendable, Closeable {
+
+    private final File targetFile;
+    private final BufferedWriter writer;
+
+    private TargetWriter(File targetFile, BufferedWriter writer) {
+        this.targetFile = targetFile;
+        this.writer = writer;
+    }
+
+    static TargetWriter open(File targetFile) throws TargetWriteException {
+        try {
+            return new TargetWriter(targetFile, Files.newWriter(targetFile, Charsets.UTF_8));
+        } catch (IOException e) {
+            throw new TargetWriteException(targetFile, e);
+        }
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws TargetWriteException {
+        try {
+            writer.append(csq);
+        } catch (IOException e) {
+            throw new TargetWriteException(targetFile, e);
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws TargetWriteException {
+        try {
+            writer.append(csq, start, end);
+        } catch (IOException e) {
+            throw new TargetWriteException(targetFile, e);
+        }
+        return this;
+    }
+
     @Override
-    public FeatureMetric convert(String metric) {
-        return switch (metric.toLowerCase()) {
-            case "lines" -> new NumberLinesFeature();
-            case "h_volume" -> new HalsteadVolumeFeature();
-            case "token_entropy" -> new TokenEntropyFeature();
-            case "cyclomatic_complexity" -> new CyclomaticComplexityFeature();
-            default -> throw new IllegalArgumentException("The metric '" + metric + "' is not a valid option.");
-        };
+    public Appendable append(char c) throws TargetWriteException {
+        try {
+            writer.append(c);
+        } catch (IOException e) {
+            throw new TargetWriteException(targetFile, e);
+        }
+        return this;
+    }
+
+    @Override
+    public void close() throws TargetWriteException {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new TargetWriteException(targetFile, e);
+        }
     }
 }
@@ -0,0 +1,103 @@
+package readability.subcommands;
+
+import readability.utils.Classify;
+import readability.utils.LogisticScorer;
+import readability.utils.ReadabilityModel;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+import weka.core.Instances;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+@Command(
+        name = "train",
+        description = "Trains the classifier on all snippets of a preprocessed dataset and saves it for predict"
+)
+public class SubcommandTrain implements Callable<Integer> {
+
+    @Spec
+    CommandSpec spec;
+
+    private File data;
+    private File modelFile;
+    private File coefficientFile;
+    private double threshold = ReadabilityModel.DEFAULT_THRESHOLD;
+
+    @Option(
+            names = {"-d", "--data"},
+            description = "The data .csv or .bin file to train the model on.",
+            required = true
+    )
+    public void setDataFile(File dataFile) {
+        if (!dataFile.exists() || !dataFile.isFile()) {
+            throw new ParameterException(spec.commandLine(), "The data file does not exist or is not a file.");
+        }
+        data = dataFile;
+    }
+
+    @Option(
+            names = {"-m", "--model"},
+            description = "The file where the trained model will be saved",
+            required = true
+    )
+    public void setModelFile(File modelFile) {
+        if (modelFile.isDirectory() || !modelFile.getAbsoluteFile().getParentFile().isDirectory()) {
+            throw new ParameterException(spec.commandLine(), "Model file must be a file in an existing directory.");
+        }
+        this.modelFile = modelFile;
+    }
+
+    @Option(
+            names = {"--coefficients"},
+            description = "A .coef file where the coefficients of the model are also exported to, "
+                    + "which predict scores with without loading Weka"
+    )
+    public void setCoefficientFile(File coefficientFile) {
+        if (coefficientFile.isDirectory() || !coefficientFile.getAbsoluteFile().getParentFile().isDirectory()) {
+            throw new ParameterException(spec.commandLine(), "Coefficient file must be a file in an existing directory.");
+        }
+        if (!LogisticScorer.isCoefficientFile(coefficientFile.toPath())) {
+            throw new ParameterException(spec.commandLine(), "Coefficient file must end with a .coef suffix");
+        }
+        this.coefficientFile = coefficientFile;
+    }
+
+    @Option(
+            names = {"--threshold"},
+            description = "The probability of being readable from which predict classifies a snippet as readable "
+                    + "(default: 0.5)"
+    )
+    public void setThreshold(final double threshold) {
+        if (!(threshold > 0 && threshold < 1)) {
+            throw new ParameterException(spec.commandLine(), "The threshold must be between 0 and 1.");
+        }
+        this.threshold = threshold;
+    }
+
+    @Option(
+            names = {"--summary"},
+            description = "Print a summary of the attributes of the loaded dataset"
+    )
+    private boolean summary;
+
+    public Integer call() {
+        try {
+            Instances dataset = Classify.loadDataset(data, summary);
+            ReadabilityModel model = ReadabilityModel.train(dataset, threshold);
+            model.save(modelFile.toPath());
+            if (coefficientFile != null) {
+                model.getScorer().save(coefficientFile.toPath());
+            }
+            System.out.println("Trained model on " + dataset.size() + " snippets with the feature metrics "
+                    + model.getFeatureIdentifiers() + ", saved to " + modelFile);
+            return 0;
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            return 1;
+        }
+    }
+}
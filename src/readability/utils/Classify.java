@@ -1,56 +1,327 @@
 package readability.utils;
 
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
 import weka.classifiers.functions.Logistic;
+import weka.classifiers.meta.FilteredClassifier;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
 import weka.core.Instances;
+import weka.core.Utils;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import weka.core.converters.CSVLoader;
+import weka.filters.unsupervised.attribute.Remove;
 
 public class Classify {
 
+    private static final int FOLDS = 10;
+    private static final int SEED = 1;
+
+    /**
+     * The name of the attribute identifying the snippet of each instance, written by preprocess.
+     */
+    public static final String ID_ATTRIBUTE = "File";
+
     /**
-     * Loads the {@link Instances} dataset by parsing the CSV file specified via the cli.
+     * The values of the class attribute, in the order of their indices.
+     */
+    private static final List<String> TRUTH_LABELS = List.of(ReadabilityModel.READABLE_LABEL, "N");
+
+    /**
+     * Loads the {@link Instances} dataset by parsing the CSV file specified via the cli,
+     * or by mapping it if it is a {@link FeatureMatrix} written by preprocess.
      *
-     * @param data the CSV file to load.
+     * @param data the CSV or .bin file to load.
      * @return the {@link Instances} dataset ready to be classified.
      * @throws IOException if the CSV file specified via the cli could not be loaded.
      */
     public static Instances loadDataset(File data) throws IOException {
-        CSVLoader loader = new CSVLoader();
-        loader.setSource(new File(data.toString()));
-        Instances dataset = loader.getDataSet();
+        return loadDataset(data, false);
+    }
 
-        // --- THIS IS THE FIX ---
-        // The class index must be set here, right after loading the data.
-        // This assumes the class attribute is the last one in the CSV file.
-        dataset.setClassIndex(dataset.numAttributes() - 1);
-        // --- END OF FIX ---
+    /**
+     * Loads the dataset like {@link #loadDataset(File)}, optionally printing a summary of its attributes.
+     * The summary goes over every value of every attribute, so it is only computed on request.
+     *
+     * @param data         the CSV or .bin file to load.
+     * @param printSummary whether to print the summary of the loaded dataset.
+     * @return the {@link Instances} dataset ready to be classified.
+     * @throws IOException if the CSV file specified via the cli could not be loaded.
+     */
+    public static Instances loadDataset(File data, boolean printSummary) throws IOException {
+        Instances dataset;
+        boolean binary = FeatureMatrix.isFeatureMatrix(data.toPath());
+        String relationName = data.getName().replaceFirst("\\.[^.]*$", "");
+        if (binary) {
+            dataset = toInstances(FeatureMatrix.open(data.toPath()), relationName);
+        } else {
+            dataset = readCsv(data.toPath(), relationName);
+        }
 
-        System.out.println("=== Dataset loaded from CSV ===");
-        System.out.println(dataset.toSummaryString());
+        if (printSummary) {
+            System.out.println(binary ? "=== Dataset loaded from feature matrix ===" : "=== Dataset loaded from CSV ===");
+            System.out.println(dataset.toSummaryString());
+        }
         return  dataset;
     }
 
+    /**
+     * Creates an empty dataset with the schema of the preprocessed data: the optional identifier as a string
+     * attribute, the feature metrics as numeric attributes, and the truth as the nominal class attribute,
+     * whose values are always {@link #TRUTH_LABELS} in this order.
+     */
+    private static Instances newDataset(String relationName, boolean identified, List<String> featureIdentifiers,
+                                        String className, int capacity) {
+        ArrayList<Attribute> attributes = new ArrayList<>(featureIdentifiers.size() + 2);
+        if (identified) {
+            attributes.add(new Attribute(ID_ATTRIBUTE, (List<String>) null));
+        }
+        for (String identifier : featureIdentifiers) {
+            attributes.add(new Attribute(identifier));
+        }
+        attributes.add(new Attribute(className, TRUTH_LABELS));
+
+        Instances dataset = new Instances(relationName, attributes, capacity);
+        dataset.setClassIndex(dataset.numAttributes() - 1);
+        return dataset;
+    }
+
+    /**
+     * Streams the rows of a preprocessed csv into a dataset, parsing each cell as the type its column has in the
+     * schema of {@link #newDataset}, instead of inferring the types from the whole file first. The first column is
+     * the identifier if it is named so, the last one the truth, and "?" or an empty cell is a missing value.
+     * The dataset is allocated for the number of rows estimated from the length of the first one.
+     *
+     * @throws IOException if the file could not be read or a cell does not fit the schema.
+     */
+    static Instances readCsv(Path csv, String relationName) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IOException("The data file " + csv + " is empty");
+            }
+            List<String> columns = List.of(header.split(",", -1));
+            if (columns.size() < 2) {
+                throw new IOException("The data file " + csv + " needs at least a feature and a truth column");
+            }
+            boolean identified = columns.get(0).trim().equals(ID_ATTRIBUTE);
+            List<String> featureIdentifiers = new ArrayList<>();
+            for (String column : columns.subList(identified ? 1 : 0, columns.size() - 1)) {
+                featureIdentifiers.add(column.trim());
+            }
+
+            String line = reader.readLine();
+            long estimatedRows = line == null ? 0 : Files.size(csv) / (line.length() + 1) + 1;
+            Instances dataset = newDataset(relationName, identified, featureIdentifiers,
+                    columns.get(columns.size() - 1).trim(), (int) Math.min(estimatedRows, 1 << 24));
+            Attribute identifier = identified ? dataset.attribute(0) : null;
+
+            for (int lineNumber = 2; line != null; line = reader.readLine(), lineNumber++) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                double[] values = new double[columns.size()];
+                int start = 0;
+                for (int column = 0; column < values.length; column++) {
+                    boolean last = column == values.length - 1;
+                    int end = line.indexOf(',', start);
+                    if ((end < 0) != last) {
+                        throw new IOException("Line " + lineNumber + " of " + csv + " does not have "
+                                + values.length + " cells");
+                    }
+                    if (last) {
+                        end = line.length();
+                    }
+                    String cell = line.substring(start, end).trim();
+                    if (cell.isEmpty() || cell.equals("?")) {
+                        values[column] = Utils.missingValue();
+                    } else if (column == 0 && identified) {
+                        values[column] = identifier.addStringValue(cell);
+                    } else if (last) {
+                        values[column] = TRUTH_LABELS.indexOf(cell);
+                        if (values[column] < 0) {
+                            throw new IOException("Line " + lineNumber + " of " + csv + " has the truth label " + cell
+                                    + ", expected one of " + TRUTH_LABELS);
+                        }
+                    } else {
+                        values[column] = parseValue(cell, lineNumber, csv);
+                    }
+                    start = end + 1;
+                }
+                dataset.add(new DenseInstance(1.0, values));
+            }
+            return dataset;
+        }
+    }
+
+    private static double parseValue(String cell, int lineNumber, Path csv) throws IOException {
+        try {
+            return Double.parseDouble(cell);
+        } catch (NumberFormatException e) {
+            throw new IOException("Line " + lineNumber + " of " + csv + " has the non-numeric feature value " + cell, e);
+        }
+    }
+
+    /**
+     * Builds the same dataset that {@link #readCsv} builds from the csv of the matrix, without formatting and
+     * parsing the feature values.
+     *
+     * @param matrix       the feature matrix to convert.
+     * @param relationName the name of the dataset.
+     * @return the dataset, with one instance per row of the matrix.
+     * @throws IOException if a row of the matrix has an unexpected truth label.
+     */
+    static Instances toInstances(FeatureMatrix matrix, String relationName) throws IOException {
+        Instances dataset = newDataset(relationName, true, matrix.getIdentifiers(), "Truth", matrix.numRows());
+        Attribute identifier = dataset.attribute(0);
+        int columns = matrix.numColumns();
+        for (int row = 0; row < matrix.numRows(); row++) {
+            double[] values = new double[columns + 2];
+            values[0] = identifier.addStringValue(matrix.getFileName(row));
+            for (int column = 0; column < columns; column++) {
+                values[column + 1] = matrix.getValue(row, column);
+            }
+            String truthLabel = matrix.getTruthLabel(row);
+            values[columns + 1] = truthLabel.equals(Preprocess.UNKNOWN_LABEL)
+                    ? Utils.missingValue() : TRUTH_LABELS.indexOf(truthLabel);
+            if (values[columns + 1] < 0) {
+                throw new IOException("Row " + (row + 1) + " of the feature matrix has the truth label " + truthLabel
+                        + ", expected one of " + TRUTH_LABELS);
+            }
+            dataset.add(new DenseInstance(1.0, values));
+        }
+        return dataset;
+    }
+
     /**
      * Trains and evaluates the "logistic" classifier on the given dataset.
      * For the evaluation, we apply a 10-fold cross-validation using a start seed with a value of 1.
+     * The identifier attribute is not used for training, see {@link #newClassifier}.
      *
      * @param dataset The dataset to train and evaluate the logistic classifier on.
      * @return the evaluation object hosting the evaluation results.
      * @throws Exception if the classifier could not be generated successfully.
      */
     public static Evaluation trainAndEvaluate(Instances dataset) throws Exception {
+        return trainAndEvaluate(dataset, 1);
+    }
+
+    /**
+     * Trains and evaluates the "logistic" classifier on the given dataset like {@link #trainAndEvaluate(Instances)},
+     * training the classifiers of the folds in parallel. The results are identical for any number of threads.
+     *
+     * @param dataset The dataset to train and evaluate the logistic classifier on.
+     * @param threads the number of folds trained at the same time.
+     * @return the evaluation object hosting the evaluation results.
+     * @throws Exception if the classifier could not be generated successfully.
+     */
+    public static Evaluation trainAndEvaluate(Instances dataset, int threads) throws Exception {
         // This line is no longer needed here as it's now handled in loadDataset.
         // dataset.setClassIndex(dataset.numAttributes() - 1);
 
-        Logistic logistic = new Logistic();
+        Classifier classifier = newClassifier(dataset);
         Evaluation eval = new Evaluation(dataset);
-        eval.crossValidateModel(logistic, dataset, 10, new Random(1));
+        if (threads == 1) {
+            eval.crossValidateModel(classifier, dataset, FOLDS, new Random(SEED));
+        } else {
+            crossValidateModel(eval, classifier, dataset, FOLDS, new Random(SEED), threads);
+        }
 
         return eval;
     }
+
+    /**
+     * Creates the "logistic" classifier for the given dataset. If the dataset has an identifier attribute, the
+     * classifier removes it before training: an identifier has a different value for every snippet, so the model
+     * would otherwise get one parameter per snippet. The attribute stays in the dataset and its evaluation.
+     *
+     * @param dataset the dataset the classifier is going to be trained on.
+     * @return the untrained classifier.
+     */
+    static Classifier newClassifier(Instances dataset) {
+        Logistic logistic = new Logistic();
+        Attribute identifier = dataset.attribute(ID_ATTRIBUTE);
+        if (identifier == null || identifier.index() == dataset.classIndex()) {
+            return logistic;
+        }
+
+        Remove removeIdentifier = new Remove();
+        removeIdentifier.setAttributeIndicesArray(new int[]{identifier.index()});
+        FilteredClassifier classifier = new FilteredClassifier();
+        classifier.setFilter(removeIdentifier);
+        classifier.setClassifier(logistic);
+        return classifier;
+    }
+
+    /**
+     * Does what {@link Evaluation#crossValidateModel(Classifier, Instances, int, Random, Object...)} does, but builds
+     * the classifiers of the folds in parallel. The folds are split in the same order from the same random numbers,
+     * and the models are evaluated one fold after another, so the evaluation ends up in the same state.
+     * At most {@code threads} training sets exist at a time, as each fold is dropped once it is evaluated.
+     */
+    static void crossValidateModel(Evaluation eval, Classifier classifier, Instances dataset, int folds,
+                                   Random random, int threads) throws Exception {
+        Instances data = new Instances(dataset);
+        data.randomize(random);
+        if (data.classAttribute().isNominal()) {
+            data.stratify(folds);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, folds));
+        try {
+            Deque<TrainedFold> pending = new ArrayDeque<>(threads);
+            for (int fold = 0; fold < folds; fold++) {
+                if (pending.size() == threads) {
+                    pending.removeFirst().evaluate(eval);
+                }
+                // Splitting consumes random numbers, so it stays on this thread in fold order.
+                Instances trainSet = data.trainCV(folds, fold, random);
+                Instances testSet = data.testCV(folds, fold);
+                Future<Classifier> model = pool.submit(() -> {
+                    Classifier copiedClassifier = AbstractClassifier.makeCopy(classifier);
+                    copiedClassifier.buildClassifier(trainSet);
+                    return copiedClassifier;
+                });
+                pending.addLast(new TrainedFold(trainSet, testSet, model));
+            }
+            while (!pending.isEmpty()) {
+                pending.removeFirst().evaluate(eval);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * A fold whose classifier is being trained, together with the sets it is trained and evaluated on.
+     */
+    private record TrainedFold(Instances trainSet, Instances testSet, Future<Classifier> model) {
+
+        void evaluate(Evaluation eval) throws Exception {
+            Classifier trained;
+            try {
+                trained = model.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+            eval.setPriors(trainSet);
+            eval.evaluateModel(trained, testSet);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+package readability.utils;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.expr.*;
+import com.github.javaparser.ast.stmt.CatchClause;
+import com.github.javaparser.ast.stmt.DoStmt;
+import com.github.javaparser.ast.stmt.ForEachStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.SwitchEntry;
+import com.github.javaparser.ast.stmt.WhileStmt;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Collects operands, operators and decision points of a code snippet in a single walk over the AST.
+ * The counts are identical to the ones of {@link OperandVisitor}, {@link OperatorVisitor} and
+ * {@link CyclomaticComplexityVisitor}, but the tree is only traversed once.
+ * Unlike these visitors, the walk keeps its pending nodes on the heap instead of recursing once per level,
+ * so deeply nested code such as long chains of binary expressions cannot overflow the thread stack.
+ */
+public class CodeMetricsVisitor {
+
+    /**
+     * Counts the occurrences of each operand name in the given code snippet.
+     */
+    private final StringCounter operandCounts;
+
+    private static final OperatorVisitor.OperatorType[] OPERATOR_TYPES = OperatorVisitor.OperatorType.values();
+
+    /**
+     * The number of occurrences of each operator type in the given code snippet, indexed by its ordinal.
+     */
+    private final int[] operatorCounts;
+
+    /**
+     * The number of decision points, not including the base path of the snippet.
+     */
+    private int decisionPoints;
+
+    public CodeMetricsVisitor() {
+        operandCounts = new StringCounter();
+        operatorCounts = new int[OPERATOR_TYPES.length];
+    }
+
+    /**
+     * @return the operand counts as a map, which is built on each call.
+     */
+    public Map<String, Integer> getOperandsPerMethod() {
+        return operandCounts.toMap();
+    }
+
+    /**
+     * @return the number of occurrences of each operand, without boxing a single count.
+     */
+    public StringCounter getOperandCounts() {
+        return operandCounts;
+    }
+
+    /**
+     * @return the operator types that occur in the snippet with their counts, as a map built on each call.
+     */
+    public Map<OperatorVisitor.OperatorType, Integer> getOperatorsPerMethod() {
+        Map<OperatorVisitor.OperatorType, Integer> operatorsPerMethod = new EnumMap<>(OperatorVisitor.OperatorType.class);
+        for (OperatorVisitor.OperatorType type : OPERATOR_TYPES) {
+            if (operatorCounts[type.ordinal()] > 0) {
+                operatorsPerMethod.put(type, operatorCounts[type.ordinal()]);
+            }
+        }
+        return operatorsPerMethod;
+    }
+
+    public int getOperatorCount(OperatorVisitor.OperatorType type) {
+        return operatorCounts[type.ordinal()];
+    }
+
+    /**
+     * @return the number of operator types that occur in the snippet.
+     */
+    public int getUniqueOperators() {
+        int uniqueOperators = 0;
+        for (int count : operatorCounts) {
+            if (count > 0) {
+                uniqueOperators++;
+            }
+        }
+        return uniqueOperators;
+    }
+
+    /**
+     * @return the number of operators in the snippet.
+     */
+    public int getTotalOperators() {
+        int totalOperators = 0;
+        for (int count : operatorCounts) {
+            totalOperators += count;
+        }
+        return totalOperators;
+    }
+
+    public int getDecisionPoints() {
+        return decisionPoints;
+    }
+
+    /**
+     * Forgets all counts, so the visitor can walk the tree of another snippet without allocating new tables.
+     */
+    public void reset() {
+        operandCounts.reset();
+        Arrays.fill(operatorCounts, 0);
+        decisionPoints = 0;
+    }
+
+    private void addOperand(String name) {
+        operandCounts.add(name);
+    }
+
+    private void addOperator(OperatorVisitor.OperatorType type) {
+        operatorCounts[type.ordinal()]++;
+    }
+
+    private void addOperators(OperatorVisitor.OperatorType type, int count) {
+        operatorCounts[type.ordinal()] += count;
+    }
+
+    /**
+     * Walks the given tree in pre-order and counts each of its nodes. The counts do not depend on the order,
+     * so they are the same as the ones of the recursive visitors.
+     *
+     * @param root the root of the tree to walk, usually the parsed snippet.
+     */
+    public void visit(Node root) {
+        visit(root, () -> {
+        });
+    }
+
+    /**
+     * Walks the given tree like {@link #visit(Node)}, running the given checkpoint after every
+     * {@value SnippetLimits#NODES_PER_CHECK} nodes, so that a walk taking too long can be aborted.
+     *
+     * @param root       the root of the tree to walk, usually the parsed snippet.
+     * @param checkpoint run regularly during the walk, which ends with any exception it throws.
+     */
+    public void visit(Node root, Runnable checkpoint) {
+        int counted = 0;
+        for (Iterator<Node> nodes = root.stream(Node.TreeTraversal.PREORDER).iterator(); nodes.hasNext(); ) {
+            count(nodes.next());
+            if (++counted % SnippetLimits.NODES_PER_CHECK == 0) {
+                checkpoint.run();
+            }
+        }
+    }
+
+    private void count(Node node) {
+        switch (node) {
+            // --- Operands ---
+            case SimpleName n -> addOperand(n.getIdentifier());
+            case BooleanLiteralExpr n -> addOperand(String.valueOf(n.getValue()));
+            case CharLiteralExpr n -> addOperand(n.getValue());
+            case DoubleLiteralExpr n -> addOperand(n.getValue());
+            case IntegerLiteralExpr n -> addOperand(n.getValue());
+            case LongLiteralExpr n -> addOperand(n.getValue());
+            // A String having a value of NULL is not distinguished from the null literal.
+            case StringLiteralExpr n -> addOperand("NULL".equalsIgnoreCase(n.getValue()) ? "null" : n.getValue());
+            case NullLiteralExpr n -> addOperand("null");
+
+            // --- Operators ---
+            case AssignExpr n -> addOperator(OperatorVisitor.OperatorType.ASSIGNMENT);
+            // Each declarator (e.g., 'a' in 'int a, b;') is counted as one assignment.
+            case VariableDeclarationExpr n -> addOperators(OperatorVisitor.OperatorType.ASSIGNMENT, n.getVariables().size());
+            case BinaryExpr n -> {
+                addOperator(OperatorVisitor.OperatorType.BINARY);
+                if (n.getOperator() == BinaryExpr.Operator.AND || n.getOperator() == BinaryExpr.Operator.OR) {
+                    decisionPoints++;
+                }
+            }
+            case UnaryExpr n -> addOperator(OperatorVisitor.OperatorType.UNARY);
+            case ConditionalExpr n -> {
+                addOperator(OperatorVisitor.OperatorType.CONDITIONAL);
+                decisionPoints++;
+            }
+            case InstanceOfExpr n -> addOperator(OperatorVisitor.OperatorType.TYPE_COMPARISON);
+
+            // --- Decision points ---
+            case IfStmt n -> decisionPoints++;
+            case ForStmt n -> decisionPoints++;
+            case ForEachStmt n -> decisionPoints++;
+            case WhileStmt n -> decisionPoints++;
+            case DoStmt n -> decisionPoints++;
+            case CatchClause n -> decisionPoints++;
+            case SwitchEntry n -> decisionPoints += n.getLabels().size();
+            default -> {
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package readability.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+
+/**
+ * A persistent cache of feature values, keyed by the content hash of a snippet and a versioned metric key.
+ * Besides values, it remembers the snippets a metric failed on because they do not parse, so they are not parsed
+ * again either. The cache is loaded into memory when opened and written back when closed. It never holds more than
+ * its maximum number of entries: inserting beyond it evicts the least recently used entry, so memory stays bounded
+ * during a run. Only the first 128 bits of the content hash are kept. All lookups and insertions are thread-safe.
+ * <p>
+ * A large cache is split into segments by the hash of the key, each with its own lock and its own share of the
+ * maximum entries, so that threads looking up values rarely wait for each other. Eviction then takes the least
+ * recently used entry of a segment, which is only approximately the least recently used entry of the cache.
+ */
+public class FeatureCache implements Closeable {
+
+    private static final int MAGIC = 0x52464331; // "RFC1"
+    private static final int FORMAT_VERSION = 3;
+
+    /**
+     * The number of segments of a cache large enough to be split.
+     */
+    private static final int SEGMENTS = 64;
+
+    /**
+     * The smallest number of entries per segment, below which the cache stays in one segment and evicts exactly
+     * the least recently used entry.
+     */
+    private static final int MIN_SEGMENT_ENTRIES = 1024;
+
+    private record Key(long high, long low, int metric) {}
+
+    private final Path file;
+
+    private final Map<String, Integer> metricIndices = new HashMap<>();
+
+    /**
+     * The cached values in access order, from the least to the most recently used, split into segments by the hash
+     * of their key. A null value marks a snippet the metric failed on. Lookups reorder the entries, so they are
+     * synchronized on their segment like insertions.
+     */
+    private final List<LinkedHashMap<Key, Double>> segments;
+
+    private FeatureCache(Path file, int maxEntries) {
+        this.file = file;
+        int segmentCount = maxEntries >= SEGMENTS * MIN_SEGMENT_ENTRIES ? SEGMENTS : 1;
+        this.segments = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            // The maximum is shared out so that the segments together hold exactly maxEntries.
+            int maxSegmentEntries = maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1 : 0);
+            segments.add(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+                    return size() > maxSegmentEntries;
+                }
+            });
+        }
+    }
+
+    /**
+     * Opens the cache stored in the given file, or an empty cache if the file does not exist yet.
+     *
+     * @param file       the file the cache is loaded from and saved to.
+     * @param maxEntries the maximum number of entries held by the cache.
+     * @return the opened cache.
+     * @throws IOException if the file exists but is not a readable feature cache.
+     */
+    public static FeatureCache open(Path file, int maxEntries) throws IOException {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The cache must hold at least one entry, but was " + maxEntries);
+        }
+        FeatureCache cache = new FeatureCache(file, maxEntries);
+        if (!Files.exists(file)) {
+            return cache;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a feature cache");
+            }
+            if (in.readInt() != FORMAT_VERSION) {
+                System.err.println("Warning: Ignoring feature cache " + file + " written in a different format.");
+                return cache;
+            }
+
+            int metricCount = in.readInt();
+            for (int i = 0; i < metricCount; i++) {
+                cache.metricIndices.put(in.readUTF(), i);
+            }
+            // The entries of each segment are saved from the least to the most recently used, which restores their order.
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                Key key = new Key(in.readLong(), in.readLong(), in.readInt());
+                Double value = in.readBoolean() ? null : in.readDouble();
+                cache.segmentOf(key).put(key, value);
+            }
+            return cache;
+        } catch (EOFException e) {
+            throw new IOException("Feature cache " + file + " is truncated", e);
+        }
+    }
+
+    /**
+     * Returns the index under which the values of a feature metric are stored, registering new metrics.
+     *
+     * @param metricKey the versioned key of the feature metric.
+     * @return the index to pass to {@link #get} and {@link #put}.
+     */
+    public synchronized int indexOf(String metricKey) {
+        return metricIndices.computeIfAbsent(metricKey, k -> metricIndices.size());
+    }
+
+    /**
+     * Looks up a cached feature value.
+     *
+     * @param contentHash the hash of the snippet's content.
+     * @param metric      the index of the feature metric.
+     * @return the cached value, or empty if the value is not cached or the metric failed on the snippet.
+     */
+    public OptionalDouble get(byte[] contentHash, int metric) {
+        Key key = keyOf(contentHash, metric);
+        LinkedHashMap<Key, Double> segment = segmentOf(key);
+        Double value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        return value == null ? OptionalDouble.empty() : OptionalDouble.of(value);
+    }
+
+    /**
+     * @param contentHash the hash of the snippet's content.
+     * @param metric      the index of the feature metric.
+     * @return true if the metric failed on the snippet, as recorded by {@link #putFailure}.
+     */
+    public boolean hasFailed(byte[] contentHash, int metric) {
+        Key key = keyOf(contentHash, metric);
+        LinkedHashMap<Key, Double> segment = segmentOf(key);
+        synchronized (segment) {
+            return segment.containsKey(key) && segment.get(key) == null;
+        }
+    }
+
+    /**
+     * Caches a computed feature value, evicting the least recently used value if the cache is full.
+     *
+     * @param contentHash the hash of the snippet's content.
+     * @param metric      the index of the feature metric.
+     * @param value       the value computed for the snippet.
+     */
+    public void put(byte[] contentHash, int metric, double value) {
+        putEntry(keyOf(contentHash, metric), value);
+    }
+
+    /**
+     * Caches that the feature metric fails on the snippet in every run, such as because the snippet does not parse.
+     *
+     * @param contentHash the hash of the snippet's content.
+     * @param metric      the index of the feature metric.
+     */
+    public void putFailure(byte[] contentHash, int metric) {
+        putEntry(keyOf(contentHash, metric), null);
+    }
+
+    private void putEntry(Key key, Double value) {
+        LinkedHashMap<Key, Double> segment = segmentOf(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (LinkedHashMap<Key, Double> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private LinkedHashMap<Key, Double> segmentOf(Key key) {
+        return segments.get(Math.floorMod(key.hashCode(), segments.size()));
+    }
+
+    private static Key keyOf(byte[] contentHash, int metric) {
+        ByteBuffer hash = ByteBuffer.wrap(contentHash);
+        return new Key(hash.getLong(0), hash.getLong(Long.BYTES), metric);
+    }
+
+    /**
+     * Saves the cache to its file. The file is replaced atomically, so an interrupted save leaves the previous
+     * cache intact.
+     *
+     * @throws IOException if the cache could not be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        List<Map.Entry<Key, Double>> kept = new ArrayList<>();
+        for (LinkedHashMap<Key, Double> segment : segments) {
+            synchronized (segment) {
+                kept.addAll(segment.entrySet());
+            }
+        }
+
+        String[] metricKeys = new String[metricIndices.size()];
+        metricIndices.forEach((metricKey, index) -> metricKeys[index] = metricKey);
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(metricKeys.length);
+            for (String metricKey : metricKeys) {
+                out.writeUTF(metricKey);
+            }
+            out.writeInt(kept.size());
+            for (Map.Entry<Key, Double> entry : kept) {
+                out.writeLong(entry.getKey().high());
+                out.writeLong(entry.getKey().low());
+                out.writeInt(entry.getKey().metric());
+                out.writeBoolean(entry.getValue() == null);
+                if (entry.getValue() != null) {
+                    out.writeDouble(entry.getValue());
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
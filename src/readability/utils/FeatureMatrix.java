@@ -0,0 +1,255 @@
+package readability.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The preprocessed dataset in a binary, columnar format that keeps the full precision of the feature values.
+ * All numbers are little-endian. The file starts with a header holding the number of rows and columns,
+ * the identifiers of the feature metrics, and the file name and truth label of each row. It is followed by one
+ * array of doubles per feature metric, aligned to 8 bytes. An opened matrix is memory-mapped and thread-safe.
+ */
+public class FeatureMatrix {
+
+    private static final int MAGIC = 0x314d4652; // "RFM1" in little-endian order
+    private static final int FORMAT_VERSION = 1;
+
+    private final ByteBuffer data;
+    private final int dataOffset;
+    private final List<String> identifiers;
+    private final String[] fileNames;
+    private final String[] truthLabels;
+
+    private FeatureMatrix(ByteBuffer data, int dataOffset, List<String> identifiers, String[] fileNames,
+                          String[] truthLabels) {
+        this.data = data;
+        this.dataOffset = dataOffset;
+        this.identifiers = identifiers;
+        this.fileNames = fileNames;
+        this.truthLabels = truthLabels;
+    }
+
+    /**
+     * @return true if the file is a feature matrix, judged by its .bin suffix.
+     */
+    public static boolean isFeatureMatrix(Path file) {
+        return file.getFileName().toString().toLowerCase().endsWith(".bin");
+    }
+
+    /**
+     * Opens a feature matrix by memory-mapping it.
+     *
+     * @param file the file written by {@link Builder#write}.
+     * @return the opened matrix.
+     * @throws IOException if the file could not be read or is not a feature matrix.
+     */
+    public static FeatureMatrix open(Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Feature matrix " + file + " is too large to be mapped");
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        try {
+            if (data.getInt() != MAGIC) {
+                throw new IOException(file + " is not a feature matrix");
+            }
+            if (data.getInt() != FORMAT_VERSION) {
+                throw new IOException("Feature matrix " + file + " was written in a different format");
+            }
+            int rows = data.getInt();
+            int columns = data.getInt();
+            if (rows < 0 || columns < 0) {
+                throw new IOException("Feature matrix " + file + " is corrupt");
+            }
+            List<String> identifiers = new ArrayList<>(columns);
+            for (int column = 0; column < columns; column++) {
+                identifiers.add(getString(data));
+            }
+            String[] fileNames = new String[rows];
+            for (int row = 0; row < rows; row++) {
+                fileNames[row] = getString(data);
+            }
+            String[] truthLabels = new String[rows];
+            for (int row = 0; row < rows; row++) {
+                truthLabels[row] = getString(data);
+            }
+
+            int dataOffset = align(data.position());
+            if ((long) dataOffset + (long) rows * columns * Double.BYTES > data.capacity()) {
+                throw new IOException("Feature matrix " + file + " is truncated");
+            }
+            return new FeatureMatrix(data, dataOffset, List.copyOf(identifiers), fileNames, truthLabels);
+        } catch (RuntimeException e) {
+            // A buffer underflow or a negative string length means the header is cut short.
+            throw new IOException("Feature matrix " + file + " is corrupt", e);
+        }
+    }
+
+    public int numRows() {
+        return fileNames.length;
+    }
+
+    public int numColumns() {
+        return identifiers.size();
+    }
+
+    /**
+     * @return the identifiers of the feature metrics, one per column.
+     */
+    public List<String> getIdentifiers() {
+        return identifiers;
+    }
+
+    public String getFileName(int row) {
+        return fileNames[row];
+    }
+
+    public String getTruthLabel(int row) {
+        return truthLabels[row];
+    }
+
+    /**
+     * @return the value of a feature metric for one row. The whole file is mapped at once, so every offset fits an int.
+     */
+    public double getValue(int row, int column) {
+        return data.getDouble(dataOffset + (column * fileNames.length + row) * Double.BYTES);
+    }
+
+    /**
+     * @return the values of one feature metric for all rows, read straight from the mapped file.
+     */
+    public DoubleBuffer getColumn(int column) {
+        int columnOffset = dataOffset + column * fileNames.length * Double.BYTES;
+        return data.slice(columnOffset, fileNames.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int align(int position) {
+        return (position + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+    }
+
+    /**
+     * Collects the rows of a feature matrix in memory, column by column, and writes them to a file.
+     */
+    public static class Builder {
+
+        private final List<String> identifiers;
+        private final List<String> fileNames = new ArrayList<>();
+        private final List<String> truthLabels = new ArrayList<>();
+        private double[][] columns;
+
+        /**
+         * @param identifiers the identifiers of the feature metrics, one per column.
+         */
+        public Builder(List<String> identifiers) {
+            this.identifiers = List.copyOf(identifiers);
+            this.columns = new double[identifiers.size()][64];
+        }
+
+        /**
+         * Appends a row.
+         *
+         * @param featureRow the row, holding one value per column.
+         */
+        public void add(FeatureRow featureRow) {
+            if (featureRow.values().length != identifiers.size()) {
+                throw new IllegalArgumentException("Expected " + identifiers.size() + " values, but got "
+                        + featureRow.values().length);
+            }
+            int row = fileNames.size();
+            for (int column = 0; column < columns.length; column++) {
+                if (row == columns[column].length) {
+                    columns[column] = Arrays.copyOf(columns[column], row * 2);
+                }
+                columns[column][row] = featureRow.values()[column];
+            }
+            fileNames.add(featureRow.fileName());
+            truthLabels.add(featureRow.truthLabel());
+        }
+
+        public int size() {
+            return fileNames.size();
+        }
+
+        /**
+         * Writes the matrix to the given file, which is replaced atomically.
+         *
+         * @param file the file to write to.
+         * @throws IOException if the file could not be written.
+         */
+        public void write(Path file) throws IOException {
+            Path directory = file.toAbsolutePath().getParent();
+            Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(fileNames.size()).putInt(identifiers.size());
+                long position = Integer.BYTES * 4;
+                for (List<String> strings : List.of(identifiers, fileNames, truthLabels)) {
+                    for (String string : strings) {
+                        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                        buffer = ensureRemaining(channel, buffer, Integer.BYTES + bytes.length);
+                        buffer.putInt(bytes.length).put(bytes);
+                        position += Integer.BYTES + bytes.length;
+                    }
+                }
+                while (position % Double.BYTES != 0) {
+                    buffer = ensureRemaining(channel, buffer, 1);
+                    buffer.put((byte) 0);
+                    position++;
+                }
+                for (double[] column : columns) {
+                    for (int row = 0; row < fileNames.size(); row++) {
+                        buffer = ensureRemaining(channel, buffer, Double.BYTES);
+                        buffer.putDouble(column[row]);
+                    }
+                }
+                flush(channel, buffer);
+            } catch (IOException e) {
+                Files.deleteIfExists(temporary);
+                throw e;
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Flushes the buffer if it has less than the given space left, growing it for very long strings.
+         */
+        private static ByteBuffer ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return buffer;
+            }
+            flush(channel, buffer);
+            if (buffer.capacity() < bytes) {
+                return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return buffer;
+        }
+
+        private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
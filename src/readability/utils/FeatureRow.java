@@ -0,0 +1,48 @@
+package readability.utils;
+
+import java.util.Arrays;
+
+/**
+ * The feature values computed for one snippet, together with its truth label.
+ *
+ * @param fileName   the file name of the snippet.
+ * @param values     the value of each feature metric, in the order of the metrics.
+ * @param truthLabel "Y" if the snippet is rated readable, "N" otherwise, "?" if it has no ground truth.
+ * @param skipped    true if the snippet exceeded one of its {@link SnippetLimits}, so it has no values.
+ */
+public record FeatureRow(String fileName, double[] values, String truthLabel, boolean skipped) {
+
+    public FeatureRow(String fileName, double[] values, String truthLabel) {
+        this(fileName, values, truthLabel, false);
+    }
+
+    /**
+     * Creates the row of a snippet whose features were not computed. Its values are NaN,
+     * which Weka reads as missing values.
+     *
+     * @param columns the number of feature metrics.
+     */
+    public static FeatureRow skipped(String fileName, int columns, String truthLabel) {
+        double[] values = new double[columns];
+        Arrays.fill(values, Double.NaN);
+        return new FeatureRow(fileName, values, truthLabel, true);
+    }
+
+    /**
+     * @param precision the number of decimal places of the feature values.
+     * @return the csv row of the snippet, without a line separator. The values of a skipped row are written as "?",
+     * the missing value of Weka's csv loader.
+     */
+    public String toCsv(int precision) {
+        StringBuilder csvRow = new StringBuilder();
+        csvRow.append(fileName);
+        for (double value : values) {
+            if (skipped) {
+                csvRow.append(",?");
+            } else {
+                FixedPointFormat.append(csvRow.append(","), value, precision);
+            }
+        }
+        return csvRow.append(",").append(truthLabel).toString();
+    }
+}
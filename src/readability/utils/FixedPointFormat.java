@@ -0,0 +1,83 @@
+package readability.utils;
+
+import java.util.Locale;
+
+/**
+ * Appends doubles with a fixed number of decimal places, producing the same text as
+ * {@code String.format(Locale.ROOT, "%.<precision>f", value)} without parsing a format string,
+ * boxing the value or creating a formatter.
+ */
+public class FixedPointFormat {
+
+    /**
+     * Precisions above this are always formatted by {@link String#format}.
+     */
+    public static final int MAX_FAST_PRECISION = 9;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_FAST_PRECISION + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Scaled values above this are formatted by {@link String#format}, as their fraction is no longer precise.
+     */
+    private static final double MAX_FAST_SCALED_VALUE = 1e15;
+
+    /**
+     * Appends the given value rounded half-up to the given number of decimal places.
+     *
+     * @param out       the buffer to append to.
+     * @param value     the value to format.
+     * @param precision the number of decimal places.
+     * @return the given buffer.
+     */
+    public static StringBuilder append(StringBuilder out, double value, int precision) {
+        if (Double.isNaN(value)) {
+            return out.append("NaN");
+        }
+        if (Double.isInfinite(value)) {
+            return out.append(value > 0 ? "Infinity" : "-Infinity");
+        }
+        if (precision < 0 || precision > MAX_FAST_PRECISION) {
+            return appendFormatted(out, value, precision);
+        }
+
+        long scale = POWERS_OF_TEN[precision];
+        double scaled = Math.abs(value) * scale;
+        if (scaled >= MAX_FAST_SCALED_VALUE) {
+            return appendFormatted(out, value, precision);
+        }
+
+        long truncated = (long) scaled;
+        double fraction = scaled - truncated;
+        // String.format rounds the shortest decimal representation of the value half-up. Only when the scaled
+        // value lies within rounding error of a tie could the binary value round differently, so let it decide.
+        if (Math.abs(fraction - 0.5) <= 4 * Math.ulp(scaled)) {
+            return appendFormatted(out, value, precision);
+        }
+        long rounded = fraction > 0.5 ? truncated + 1 : truncated;
+
+        // Like String.format, negative values keep their sign even if they round to zero.
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            out.append('-');
+        }
+        out.append(rounded / scale);
+        if (precision > 0) {
+            out.append('.');
+            long decimals = rounded % scale;
+            for (long digit = scale / 10; digit > 0; digit /= 10) {
+                out.append((char) ('0' + decimals / digit % 10));
+            }
+        }
+        return out;
+    }
+
+    private static StringBuilder appendFormatted(StringBuilder out, double value, int precision) {
+        return out.append(String.format(Locale.ROOT, "%." + precision + "f", value));
+    }
+}
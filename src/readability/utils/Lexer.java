@@ -0,0 +1,92 @@
+package readability.utils;
+
+import com.github.javaparser.GeneratedJavaParserConstants;
+import com.github.javaparser.GeneratedJavaParserTokenManager;
+import com.github.javaparser.SimpleCharStream;
+import com.github.javaparser.StringProvider;
+import com.github.javaparser.Token;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Splits a code snippet into the tokens JavaParser would store for it, without building an AST.
+ * Only JavaParser's token manager runs, so syntax errors are not detected.
+ */
+public class Lexer {
+
+    /**
+     * Returns the token texts of the given snippet as they appear in the token range of the parsed snippet.
+     * Like the token range, the result includes whitespace and comments between the first and the last code token,
+     * but not the ones before or after them.
+     *
+     * @param codeSnippet The code of the respective .jsnp as a String
+     * @return the token texts in source order, empty if the snippet has no code tokens.
+     * @throws com.github.javaparser.TokenMgrException if the snippet contains characters that are not valid Java.
+     */
+    public static List<String> tokenize(String codeSnippet) {
+        List<String> texts = new ArrayList<>();
+        forEachToken(codeSnippet, (kind, text) -> texts.add(text));
+        return texts;
+    }
+
+    /**
+     * Receives the tokens of a snippet one by one.
+     */
+    public interface TokenConsumer {
+        /**
+         * @param kind the kind of the token, one of {@link GeneratedJavaParserConstants}.
+         * @param text the text of the token.
+         */
+        void accept(int kind, String text);
+    }
+
+    /**
+     * Passes the tokens of the given snippet to the consumer as they are lexed, the same tokens in the same order
+     * as {@link #tokenize} returns, but without collecting them.
+     *
+     * @param codeSnippet The code of the respective .jsnp as a String
+     * @param consumer    receives the kind and text of each token.
+     * @throws com.github.javaparser.TokenMgrException if the snippet contains characters that are not valid Java.
+     */
+    public static void forEachToken(String codeSnippet, TokenConsumer consumer) {
+        GeneratedJavaParserTokenManager tokenManager =
+                new GeneratedJavaParserTokenManager(new SimpleCharStream(new StringProvider(codeSnippet)));
+        tokenManager.setStoreTokens(false);
+
+        Deque<Token> specialTokens = new ArrayDeque<>();
+        boolean afterFirstCodeToken = false;
+
+        // Whitespace and comments after the last code token are chained to the EOF token, so they are never passed on.
+        for (Token token = tokenManager.getNextToken(); token.kind != GeneratedJavaParserConstants.EOF;
+             token = tokenManager.getNextToken()) {
+            if (afterFirstCodeToken) {
+                // Whitespace and comments preceding a token are chained backwards from it.
+                for (Token special = token.specialToken; special != null; special = special.specialToken) {
+                    specialTokens.push(special);
+                }
+                while (!specialTokens.isEmpty()) {
+                    Token special = specialTokens.pop();
+                    consumer.accept(special.kind, textOf(special));
+                }
+            }
+            consumer.accept(token.kind, textOf(token));
+            afterFirstCodeToken = true;
+        }
+    }
+
+    /**
+     * The token manager always splits '>>' and '>>>' into single '>' tokens, but may leave the longer image
+     * on them. JavaParser fixes the text based on the token kind, and so do we.
+     */
+    private static String textOf(Token token) {
+        return switch (token.kind) {
+            case GeneratedJavaParserConstants.GT -> ">";
+            case GeneratedJavaParserConstants.RSIGNEDSHIFT -> ">>";
+            case GeneratedJavaParserConstants.RUNSIGNEDSHIFT -> ">>>";
+            default -> token.image;
+        };
+    }
+}
@@ -0,0 +1,175 @@
+package readability.utils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes the probability that a snippet is readable from the coefficients of a trained logistic regression model,
+ * without Weka: the probability is the logistic function of the intercept plus the weighted feature values, where
+ * missing values are replaced by the means of the training data. Scoring does not allocate, and the scorer is
+ * immutable and thread-safe. The coefficients are exported by {@link ReadabilityModel} and can be saved on their own.
+ */
+public class LogisticScorer {
+
+    private static final int MAGIC = 0x524c4331; // "RLC1"
+    private static final int FORMAT_VERSION = 1;
+
+    private final List<String> featureIdentifiers;
+    private final double intercept;
+    private final double[] weights;
+    private final double[] means;
+    private final double threshold;
+
+    /**
+     * @param featureIdentifiers the identifiers of the feature metrics, in the order of the values.
+     * @param intercept          the coefficient of the constant term, in favour of being readable.
+     * @param weights            the coefficient of each feature metric, in favour of being readable.
+     * @param means              the value of each feature metric that replaces a missing value.
+     * @param threshold          the probability of being readable from which a snippet is classified as readable.
+     */
+    public LogisticScorer(List<String> featureIdentifiers, double intercept, double[] weights, double[] means,
+                          double threshold) {
+        if (weights.length != featureIdentifiers.size() || means.length != featureIdentifiers.size()) {
+            throw new IllegalArgumentException("Expected " + featureIdentifiers.size() + " weights and means");
+        }
+        this.featureIdentifiers = List.copyOf(featureIdentifiers);
+        this.intercept = intercept;
+        this.weights = weights.clone();
+        this.means = means.clone();
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return true if the file holds exported coefficients, judged by its .coef suffix.
+     */
+    public static boolean isCoefficientFile(Path file) {
+        return file.getFileName().toString().toLowerCase().endsWith(".coef");
+    }
+
+    /**
+     * Loads coefficients saved by {@link #save}.
+     *
+     * @param file the file the coefficients were saved to.
+     * @return the scorer.
+     * @throws IOException if the file could not be read or holds no coefficients.
+     */
+    public static LogisticScorer load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " does not hold logistic coefficients");
+            }
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Coefficients " + file + " were written in a different format, export them again");
+            }
+            return read(in);
+        } catch (EOFException e) {
+            throw new IOException("Coefficients " + file + " are truncated", e);
+        }
+    }
+
+    /**
+     * Saves the coefficients on their own, replacing the file atomically.
+     *
+     * @param file the file to save the coefficients to.
+     * @throws IOException if the file could not be written.
+     */
+    public void save(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            write(out);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the threshold and the coefficients of each feature metric, as written by {@link #write}.
+     */
+    static LogisticScorer read(DataInput in) throws IOException {
+        double threshold = in.readDouble();
+        double intercept = in.readDouble();
+        int features = in.readInt();
+        if (features < 0) {
+            throw new IOException("Negative number of feature metrics");
+        }
+        List<String> identifiers = new ArrayList<>(features);
+        double[] weights = new double[features];
+        double[] means = new double[features];
+        for (int i = 0; i < features; i++) {
+            identifiers.add(in.readUTF());
+            weights[i] = in.readDouble();
+            means[i] = in.readDouble();
+        }
+        return new LogisticScorer(identifiers, intercept, weights, means, threshold);
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeDouble(threshold);
+        out.writeDouble(intercept);
+        out.writeInt(featureIdentifiers.size());
+        for (int i = 0; i < featureIdentifiers.size(); i++) {
+            out.writeUTF(featureIdentifiers.get(i));
+            out.writeDouble(weights[i]);
+            out.writeDouble(means[i]);
+        }
+    }
+
+    /**
+     * @return the identifiers of the feature metrics, in the order {@link #probabilityReadable} expects their values.
+     */
+    public List<String> getFeatureIdentifiers() {
+        return featureIdentifiers;
+    }
+
+    public double getIntercept() {
+        return intercept;
+    }
+
+    public double getWeight(int feature) {
+        return weights[feature];
+    }
+
+    public double getMean(int feature) {
+        return means[feature];
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Computes the probability that a snippet is readable. The terms are summed in the order Weka sums them,
+     * so the probability matches the one of the exported classifier.
+     *
+     * @param values the value of each feature metric, NaN if it is missing.
+     * @return the probability of being readable.
+     */
+    public double probabilityReadable(double[] values) {
+        if (values.length != weights.length) {
+            throw new IllegalArgumentException("Expected " + weights.length + " values, but got " + values.length);
+        }
+        double logit = intercept;
+        for (int i = 0; i < weights.length; i++) {
+            double value = Double.isNaN(values[i]) ? means[i] : values[i];
+            logit += weights[i] * value;
+        }
+        return 1 / (1 + Math.exp(-logit));
+    }
+
+    /**
+     * @param probability the probability of being readable, see {@link #probabilityReadable}.
+     * @return true if a snippet with this probability is classified as readable.
+     */
+    public boolean isReadable(double probability) {
+        return probability >= threshold;
+    }
+}
@@ -0,0 +1,73 @@
+package readability.utils;
+
+import com.github.javaparser.ParserConfiguration;
+import readability.features.FeatureMetric;
+
+import java.util.List;
+
+/**
+ * Describes how much work JavaParser has to do for the selected feature metrics.
+ * The profiles are ordered from cheapest to most expensive, so a set of metrics needs the largest profile
+ * any of them requires.
+ */
+public enum ParseProfile {
+
+    /**
+     * The metrics never look at the parsed code, so snippets are not parsed at all.
+     */
+    NONE,
+
+    /**
+     * Only the AST itself: no token storage, no comment attribution and no line separator detection.
+     */
+    LEAN,
+
+    /**
+     * Like {@link #LEAN}, but every node keeps its token range.
+     */
+    TOKENS,
+
+    /**
+     * The default configuration of JavaParser.
+     */
+    FULL;
+
+    /**
+     * Creates the JavaParser configuration for this profile.
+     *
+     * @return a new configuration that turns off everything this profile does not need.
+     * @throws IllegalStateException if this profile does not permit parsing.
+     */
+    ParserConfiguration createConfiguration() {
+        return switch (this) {
+            case NONE -> throw new IllegalStateException("The parse profile NONE does not permit parsing");
+            case LEAN -> leanConfiguration().setStoreTokens(false);
+            case TOKENS -> leanConfiguration().setStoreTokens(true);
+            case FULL -> new ParserConfiguration();
+        };
+    }
+
+    private static ParserConfiguration leanConfiguration() {
+        return new ParserConfiguration()
+                .setAttributeComments(false)
+                .setLexicalPreservationEnabled(false)
+                .setDetectOriginalLineSeparator(false);
+    }
+
+    /**
+     * Picks the cheapest profile that still serves all of the given feature metrics.
+     *
+     * @param featureMetrics the list of specified features via the cli.
+     * @return the most expensive profile required by any of the metrics, or {@link #NONE} if there are none.
+     */
+    public static ParseProfile cheapestFor(List<FeatureMetric> featureMetrics) {
+        ParseProfile profile = NONE;
+        for (FeatureMetric featureMetric : featureMetrics) {
+            ParseProfile required = featureMetric.getParseProfile();
+            if (required.compareTo(profile) > 0) {
+                profile = required;
+            }
+        }
+        return profile;
+    }
+}
@@ -3,22 +3,190 @@
 import com.github.javaparser.*;
 import com.github.javaparser.ast.body.BodyDeclaration;
 
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 public class Parser {
 
+    /**
+     * The stack size of the thread that parses a snippet nested too deeply for the stack of the calling thread.
+     * JavaParser descends and validates the tree recursively, taking a few kilobytes of stack per level of nesting,
+     * so a default stack overflows at a few hundred levels, while this one holds tens of thousands.
+     * The stack is only reserved, and committed as deep as the parse goes.
+     */
+    private static final long DEEP_STACK_SIZE = 256L << 20;
+
+    /**
+     * The number of characters handed to JavaParser between two runs of the checkpoint of a parse.
+     */
+    private static final int CHARACTERS_PER_CHECK = 1024;
+
+    /**
+     * The time a deep parser thread waits for another snippet before it ends.
+     */
+    private static final long DEEP_PARSER_KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * The deep parser of each thread, which parses the snippets overflowing the stack of the thread on a stack of
+     * {@link #DEEP_STACK_SIZE}. Its thread is started by the first of these snippets, reused by the ones after it,
+     * and ends once it has been idle for {@link #DEEP_PARSER_KEEP_ALIVE_SECONDS}, so it does not stay around for long
+     * after its worker is done.
+     */
+    private static final ThreadLocal<ExecutorService> DEEP_PARSERS = ThreadLocal.withInitial(() ->
+            new ThreadPoolExecutor(0, 1, DEEP_PARSER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    task -> {
+                        Thread thread = new Thread(null, task, "deep-parser", DEEP_STACK_SIZE);
+                        thread.setDaemon(true);
+                        return thread;
+                    }));
+
+    /**
+     * A JavaParser instance keeps and resets its generated parser between calls, which makes it cheap to reuse
+     * but unsafe to share. Every thread therefore gets its own instance per {@link ParseProfile}.
+     */
+    private static final ThreadLocal<Map<ParseProfile, JavaParser>> PARSERS =
+            ThreadLocal.withInitial(() -> new EnumMap<>(ParseProfile.class));
+
     /**
      * Parses the code of a java snippet .jsnp file using the JavaParser library such that it can accept JavaParser visitors.
+     * The parser is reused across calls of the same thread, so this method is safe to call from multiple threads.
      *
      * @param codeSnippet The code of the respective .jsnp as a String
      * @return The parsed code snippet ready to accept JavaParser visitors.
      * @throws ParseException if the code snippet could not be parsed by the JavaParser library.
      */
     public static BodyDeclaration<?> parseJavaSnippet(String codeSnippet) throws ParseException {
-        ParseResult<BodyDeclaration<?>> parseResult = new JavaParser().parse(ParseStart.CLASS_BODY, new StringProvider(codeSnippet));
+        return parseJavaSnippet(codeSnippet, ParseProfile.FULL);
+    }
+
+    /**
+     * Parses the code of a java snippet .jsnp file, only doing the work the given profile asks for.
+     *
+     * @param codeSnippet The code of the respective .jsnp as a String
+     * @param profile     The profile determining the configuration of the parser.
+     * @return The parsed code snippet ready to accept JavaParser visitors.
+     * @throws ParseException if the code snippet could not be parsed by the JavaParser library.
+     * @throws IllegalStateException if the profile does not permit parsing.
+     */
+    public static BodyDeclaration<?> parseJavaSnippet(String codeSnippet, ParseProfile profile) throws ParseException {
+        return parseJavaSnippet(codeSnippet, profile, () -> {
+        });
+    }
+
+    /**
+     * Parses the code of a java snippet .jsnp file like {@link #parseJavaSnippet(String, ParseProfile)}, running the
+     * given checkpoint regularly while the snippet is read, so that a parse taking too long can be aborted.
+     *
+     * @param codeSnippet The code of the respective .jsnp as a String
+     * @param profile     The profile determining the configuration of the parser.
+     * @param checkpoint  Run before every {@value #CHARACTERS_PER_CHECK} characters the parser reads. A
+     *                    {@link SnippetLimitException} it throws ends the parse and is thrown by this method.
+     * @return The parsed code snippet ready to accept JavaParser visitors.
+     * @throws ParseException if the code snippet could not be parsed by the JavaParser library.
+     * @throws IllegalStateException if the profile does not permit parsing.
+     */
+    public static BodyDeclaration<?> parseJavaSnippet(String codeSnippet, ParseProfile profile, Runnable checkpoint)
+            throws ParseException {
+        CheckedProvider provider = new CheckedProvider(codeSnippet, checkpoint);
+        ParseResult<BodyDeclaration<?>> parseResult;
+        try {
+            parseResult = parseOnThisThread(provider, profile);
+        } catch (StackOverflowError e) {
+            provider = new CheckedProvider(codeSnippet, checkpoint);
+            parseResult = parseOnDeepStack(provider, profile);
+        }
 
+        if (provider.limitException != null) {
+            throw provider.limitException;
+        }
         if (!parseResult.isSuccessful() || parseResult.getResult().isEmpty()) {
             throw new ParseException("Could not parse " + codeSnippet);
         }
 
         return parseResult.getResult().get();
     }
+
+    private static ParseResult<BodyDeclaration<?>> parseOnThisThread(CheckedProvider provider, ParseProfile profile) {
+        JavaParser parser = PARSERS.get().computeIfAbsent(profile, p -> new JavaParser(p.createConfiguration()));
+        try {
+            return parser.parse(ParseStart.CLASS_BODY, provider);
+        } catch (StackOverflowError e) {
+            // The overflow may leave the reused parser in any state, so the next call of the thread gets a new one.
+            PARSERS.get().remove(profile);
+            throw e;
+        }
+    }
+
+    /**
+     * Parses a snippet on the deep parser of the calling thread, whose stack is {@link #DEEP_STACK_SIZE}. Only
+     * snippets that overflowed the stack of their thread get here, while other snippets keep being parsed by the
+     * reused parser of their thread. The checkpoint runs on the deep parser as it does on the calling thread.
+     *
+     * @throws StackOverflowError if the snippet is nested too deeply even for the deep stack.
+     */
+    private static ParseResult<BodyDeclaration<?>> parseOnDeepStack(CheckedProvider provider, ParseProfile profile)
+            throws ParseException {
+        Future<ParseResult<BodyDeclaration<?>>> parse = DEEP_PARSERS.get().submit(() -> parseOnThisThread(provider, profile));
+        try {
+            return parse.get();
+        } catch (InterruptedException e) {
+            parse.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ParseException("Interrupted while parsing a deeply nested snippet");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    /**
+     * Hands a snippet to JavaParser in chunks of at most {@link #CHARACTERS_PER_CHECK} characters, running the
+     * checkpoint before each of them. The lexer reads on demand as the parser asks for tokens, so the checkpoint
+     * runs throughout the parse rather than only before it. JavaParser takes an exception of a read for the end of
+     * the input, so the provider keeps the exception of the checkpoint and ends the input itself.
+     */
+    private static final class CheckedProvider implements Provider {
+
+        private final StringProvider provider;
+
+        private final Runnable checkpoint;
+
+        /**
+         * The exception of the checkpoint, after which the provider only reports the end of the input.
+         */
+        private SnippetLimitException limitException;
+
+        private CheckedProvider(String codeSnippet, Runnable checkpoint) {
+            this.provider = new StringProvider(codeSnippet);
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (limitException != null) {
+                return -1;
+            }
+            try {
+                checkpoint.run();
+            } catch (SnippetLimitException e) {
+                limitException = e;
+                return -1;
+            }
+            return provider.read(buffer, offset, Math.min(length, CHARACTERS_PER_CHECK));
+        }
+
+        @Override
+        public void close() {
+            provider.close();
+        }
+    }
 }
@@ -2,94 +2,545 @@
 
 import readability.features.FeatureMetric;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.Collections;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 public class Preprocess {
 
     private static final double TRUTH_THRESHOLD = 3.6;
 
+    /**
+     * The truth label of snippets collected without a ground truth, read as a missing value by Weka.
+     */
+    public static final String UNKNOWN_LABEL = "?";
+
+    /**
+     * How many rows each worker thread may compute ahead of the row that is written next.
+     */
+    private static final int ROWS_IN_FLIGHT_PER_THREAD = 4;
+
     /**
      * The main public method. It now coordinates calls to helper methods.
      */
-    public static void collectCSVBody(Path sourceDir, File truth, StringBuilder csv, List<FeatureMetric> featureMetrics) throws IOException {
-        List<File> sortedFiles = findAndSortSnippetFiles(sourceDir);
+    public static void collectCSVBody(Path sourceDir, File truth, Appendable csv, List<FeatureMetric> featureMetrics) throws IOException {
+        collectCSVBody(sourceDir, truth, csv, featureMetrics, PreprocessOptions.defaults());
+    }
+
+    /**
+     * Collects the csv rows of all snippets in the source directory and its subdirectories and appends each row
+     * as soon as it is done, so the rows can be streamed to a file instead of being kept in memory.
+     * With more than one thread, the rows are computed in parallel but still appended in the sorted file order,
+     * so the output is identical to a sequential run. The feature metrics are shared by all threads.
+     */
+    public static void collectCSVBody(Path sourceDir, File truth, Appendable csv, List<FeatureMetric> featureMetrics,
+                                      PreprocessOptions options) throws IOException {
+        collectCSVBody(sourceDir, truth, csv, featureMetrics, options, null);
+    }
+
+    /**
+     * Collects the csv rows like {@link #collectCSVBody(Path, File, Appendable, List, PreprocessOptions)}, but takes
+     * the rows of snippets that did not change since the previous run from the manifest instead of computing them.
+     * Every row that is computed is recorded in the manifest, which has to be saved once the csv is complete.
+     * <p>
+     * The source may also be a .zip or .jar archive, whose entries are read in place like the files of a directory,
+     * or a .tar, .tar.gz or .tgz archive, whose entries are read in a single pass straight from the stream.
+     * As the entries of a tar archive come in archive order, their rows are only appended once all are computed.
+     * Finally, the source may be a {@link SnippetPack}, which is memory-mapped and decoded snippet by snippet.
+     * Snippets in archives are never extracted to disk, and incremental runs are not supported for them.
+     *
+     * @param manifest the manifest of the previous run, or null to compute every row.
+     */
+    public static void collectCSVBody(Path sourceDir, File truth, Appendable csv, List<FeatureMetric> featureMetrics,
+                                      PreprocessOptions options, SnippetManifest manifest) throws IOException {
+        // The unchanged rows of the previous csv are written as they are.
+        PreviousRows<String> previousRows = manifest == null ? null : new PreviousRows<>(manifest, csvRow -> csvRow);
+        collectRows(sourceDir, truth, new CsvOutput(csv, options.precision()), featureMetrics, options, previousRows);
+    }
+
+    /**
+     * Collects the rows of all snippets like {@link #collectCSVBody(Path, File, Appendable, List, PreprocessOptions)},
+     * but adds them to a feature matrix with the full precision of the values instead of formatting them as text.
+     * The precision of the options is ignored.
+     */
+    public static void collectFeatureMatrix(Path sourceDir, File truth, FeatureMatrix.Builder matrix,
+                                            List<FeatureMetric> featureMetrics, PreprocessOptions options) throws IOException {
+        collectFeatureRows(sourceDir, truth, matrix::add, featureMetrics, options);
+    }
+
+    /**
+     * Collects the rows of all snippets like {@link #collectFeatureMatrix}, but passes each row to the given consumer
+     * in the sorted order of the snippets, on the calling thread. Without a ground truth file, every snippet is read
+     * and its row is labelled {@link #UNKNOWN_LABEL}, so snippets need not be numbered.
+     *
+     * @param truth the ground truth csv file, or null to collect unlabelled rows.
+     */
+    public static void collectFeatureRows(Path sourceDir, File truth, Consumer<FeatureRow> rows,
+                                          List<FeatureMetric> featureMetrics, PreprocessOptions options) throws IOException {
+        collectRows(sourceDir, truth, new FeatureRowOutput(rows), featureMetrics, options, null);
+    }
+
+    /**
+     * The manifest of an incremental run, with the conversion of the previous csv rows it finds to be unchanged.
+     * Only csv output is written incrementally.
+     */
+    private record PreviousRows<R>(SnippetManifest manifest, Function<String, R> reuse) {}
+
+    /**
+     * @param previousRows the rows of the previous run to reuse, or null to compute every row.
+     */
+    private static <R> void collectRows(Path sourceDir, File truth, RowOutput<R> output, List<FeatureMetric> featureMetrics,
+                                        PreprocessOptions options, PreviousRows<R> previousRows) throws IOException {
+        if (isArchive(sourceDir) && previousRows != null) {
+            throw new IllegalArgumentException("Incremental runs need a source directory, not an archive");
+        }
+        if (SnippetPack.isPack(sourceDir)) {
+            collectPackRows(SnippetPack.open(sourceDir), truth, output, featureMetrics, options);
+        } else if (isTarArchive(sourceDir)) {
+            collectTarRows(sourceDir, truth, output, featureMetrics, options);
+        } else if (isZipArchive(sourceDir)) {
+            try (FileSystem zip = FileSystems.newFileSystem(sourceDir)) {
+                for (Path root : zip.getRootDirectories()) {
+                    collectSortedRows(root, truth, output, featureMetrics, options, null);
+                }
+            }
+        } else {
+            collectSortedRows(sourceDir, truth, output, featureMetrics, options, previousRows);
+        }
+    }
+
+    /**
+     * @return true if the source is a zip or jar archive.
+     */
+    public static boolean isZipArchive(Path source) {
+        String name = source.getFileName().toString().toLowerCase();
+        return Files.isRegularFile(source) && (name.endsWith(".zip") || name.endsWith(".jar"));
+    }
+
+    /**
+     * @return true if the source is a tar archive, optionally gzip compressed.
+     */
+    public static boolean isTarArchive(Path source) {
+        String name = source.getFileName().toString().toLowerCase();
+        return Files.isRegularFile(source) && (name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz"));
+    }
+
+    /**
+     * @return true if the source is a zip, jar or tar archive or a snippet pack.
+     */
+    public static boolean isArchive(Path source) {
+        return isZipArchive(source) || isTarArchive(source) || SnippetPack.isPack(source);
+    }
+
+    /**
+     * Where the rows of a run go, either csv text or feature rows, such as those of a feature matrix.
+     * Rows are converted on the worker threads and written in the order of the snippets.
+     */
+    private interface RowOutput<R> {
+        R convert(FeatureRow featureRow);
+
+        void write(R row) throws IOException;
+    }
+
+    private record CsvOutput(Appendable csv, int precision) implements RowOutput<String> {
+        @Override
+        public String convert(FeatureRow featureRow) {
+            return featureRow.toCsv(precision);
+        }
+
+        @Override
+        public void write(String csvRow) throws IOException {
+            csv.append(csvRow).append(System.lineSeparator());
+        }
+    }
+
+    private record FeatureRowOutput(Consumer<FeatureRow> rows) implements RowOutput<FeatureRow> {
+        @Override
+        public FeatureRow convert(FeatureRow featureRow) {
+            return featureRow;
+        }
+
+        @Override
+        public void write(FeatureRow featureRow) {
+            rows.accept(featureRow);
+        }
+    }
+
+    /**
+     * Collects the rows of the snippets in a directory tree, writing them in sorted order while they are computed.
+     */
+    private static <R> void collectSortedRows(Path sourceDir, File truth, RowOutput<R> output, List<FeatureMetric> featureMetrics,
+                                              PreprocessOptions options, PreviousRows<R> previousRows) throws IOException {
+        List<Path> sortedFiles = SnippetWalker.findSnippetFiles(sourceDir, options.threads());
         if (sortedFiles.isEmpty()) {
             System.err.println("Warning: No .jsnp files found in source directory: " + sourceDir);
             return;
         }
 
-        String[] truthMeanScores = loadTruthScores(truth);
-        if (truthMeanScores == null) {
-            System.err.println("Error: 'Mean' row not found in ground truth file: " + truth.getAbsolutePath());
+        TruthScores truthScores = loadTruthScores(truth, options);
+        if (truthScores == null) {
+            return;
+        }
+
+        ParseProfile parseProfile = ParseProfile.cheapestFor(featureMetrics);
+        if (previousRows == null) {
+            computeRows(sortedFiles.iterator(), options.threads(),
+                    file -> computeLater(readSnippet(file.getFileName().toString(), () -> Files.readString(file), truthScores),
+                            featureMetrics, parseProfile, options.limits(), output),
+                    (file, row) -> writeRow(output, row));
+            return;
+        }
+        try {
+            computeRows(new PreviousRowIterator(sortedFiles.iterator(), previousRows.manifest()), options.threads(),
+                    file -> reuseOrReadFile(file, truthScores, featureMetrics, parseProfile, options.limits(), output,
+                            previousRows),
+                    (file, row) -> writeRow(output, row));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A snippet file with the row written for it in the previous run, if any.
+     */
+    private record PreviousRow(Path file, Optional<String> row) {}
+
+    /**
+     * Pairs the snippet files with their previous rows, which the manifest reads in the order of the files.
+     * As the iterator is advanced by the thread writing the rows, the previous csv is read by a single thread.
+     * Read errors are wrapped in {@link UncheckedIOException}.
+     */
+    private static class PreviousRowIterator implements Iterator<PreviousRow> {
+
+        private final Iterator<Path> files;
+        private final SnippetManifest manifest;
+
+        PreviousRowIterator(Iterator<Path> files, SnippetManifest manifest) {
+            this.files = files;
+            this.manifest = manifest;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return files.hasNext();
+        }
+
+        @Override
+        public PreviousRow next() {
+            Path file = files.next();
+            try {
+                return new PreviousRow(file, manifest.previousRow(file));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Collects the rows of the snippets in a pack, which are already stored in sorted order.
+     */
+    private static <R> void collectPackRows(SnippetPack pack, File truth, RowOutput<R> output, List<FeatureMetric> featureMetrics,
+                                            PreprocessOptions options) throws IOException {
+        if (pack.size() == 0) {
+            System.err.println("Warning: No .jsnp files found in snippet pack");
+            return;
+        }
+
+        TruthScores truthScores = loadTruthScores(truth, options);
+        if (truthScores == null) {
+            return;
+        }
+
+        ParseProfile parseProfile = ParseProfile.cheapestFor(featureMetrics);
+        computeRows(IntStream.range(0, pack.size()).iterator(), options.threads(),
+                snippet -> computeLater(readSnippet(pack.getFileName(snippet), () -> pack.read(snippet), truthScores),
+                        featureMetrics, parseProfile, options.limits(), output),
+                (snippet, row) -> writeRow(output, row));
+    }
+
+    /**
+     * A computed row of a tar entry, kept until all entries are read so the rows can be sorted.
+     * They are sorted like {@link SnippetWalker} sorts files: by number, then file name, then path.
+     * Like the walker, equally named entries are rejected.
+     */
+    private record TarRow<R>(long number, String fileName, String entryName, R row) {}
+
+    private static final Comparator<TarRow<?>> TAR_ROW_ORDER = Comparator.<TarRow<?>>comparingLong(TarRow::number)
+            .thenComparing(TarRow::fileName)
+            .thenComparing(TarRow::entryName);
+
+    /**
+     * Collects the rows of the snippets in a tar archive. The archive is read once, and only the entries
+     * whose rows are being computed are held in memory.
+     */
+    private static <R> void collectTarRows(Path archive, File truth, RowOutput<R> output, List<FeatureMetric> featureMetrics,
+                                           PreprocessOptions options) throws IOException {
+        TruthScores truthScores = loadTruthScores(truth, options);
+        if (truthScores == null) {
             return;
         }
 
-        for (File file : sortedFiles) {
-            processSingleFile(file, truthMeanScores, featureMetrics)
-                    .ifPresent(csvRow -> csv.append(csvRow).append(System.lineSeparator()));
+        ParseProfile parseProfile = ParseProfile.cheapestFor(featureMetrics);
+        List<TarRow<R>> tarRows = new ArrayList<>();
+        try (TarReader tar = new TarReader(Files.newInputStream(archive), name -> name.toLowerCase().endsWith(".jsnp"))) {
+            computeRows(new TarEntryIterator(tar), options.threads(),
+                    entry -> computeLater(readSnippet(fileNameOf(entry), () -> decodeUtf8(entry.content()), truthScores),
+                            featureMetrics, parseProfile, options.limits(), output),
+                    (entry, row) -> {
+                        if (row.isPresent()) {
+                            String fileName = fileNameOf(entry);
+                            tarRows.add(new TarRow<>(SnippetWalker.numberOf(fileName), fileName, entry.name(), row.get()));
+                        }
+                    });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (tarRows.isEmpty()) {
+            System.err.println("Warning: No .jsnp files found in source archive: " + archive);
+            return;
+        }
+        tarRows.sort(TAR_ROW_ORDER);
+        for (int i = 1; i < tarRows.size(); i++) {
+            if (tarRows.get(i - 1).fileName().equals(tarRows.get(i).fileName())) {
+                throw new IOException("The snippets " + tarRows.get(i - 1).entryName() + " and "
+                        + tarRows.get(i).entryName() + " have the same name, rename one of them");
+            }
         }
+        for (TarRow<R> tarRow : tarRows) {
+            output.write(tarRow.row());
+        }
+    }
+
+    private static String fileNameOf(TarReader.Entry entry) {
+        return entry.name().substring(entry.name().lastIndexOf('/') + 1);
     }
 
     /**
-     * Finds, filters, and sorts the .jsnp files in a directory.
-     * This method's logic can now be tested in isolation.
+     * Decodes like {@link Files#readString}, which rejects malformed input.
      */
-    private static List<File> findAndSortSnippetFiles(Path sourceDir) {
-        File[] listOfFiles = sourceDir.toFile().listFiles((dir, name) -> name.toLowerCase().endsWith(".jsnp"));
+    private static String decodeUtf8(byte[] content) throws CharacterCodingException {
+        return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(content)).toString();
+    }
+
+    /**
+     * Reads the entries of a tar archive on demand, wrapping read errors in {@link UncheckedIOException}.
+     */
+    private static class TarEntryIterator implements Iterator<TarReader.Entry> {
+
+        private final TarReader tar;
+        private TarReader.Entry next;
+
+        TarEntryIterator(TarReader tar) {
+            this.tar = tar;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = tar.next();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
 
-        if (listOfFiles == null || listOfFiles.length == 0) {
-            return Collections.emptyList();
+        @Override
+        public TarReader.Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            TarReader.Entry entry = next;
+            next = null;
+            return entry;
         }
+    }
+
+    /**
+     * Receives the rows in the order of the snippets they were computed for.
+     */
+    private interface RowConsumer<T, R> {
+        void accept(T snippet, Optional<R> row) throws IOException;
+    }
 
-        return Arrays.stream(listOfFiles)
-                .sorted((f1, f2) -> {
-                    try {
-                        String name1 = f1.getName().substring(0, f1.getName().lastIndexOf('.'));
-                        String name2 = f2.getName().substring(0, f2.getName().lastIndexOf('.'));
-                        int num1 = Integer.parseInt(name1);
-                        int num2 = Integer.parseInt(name2);
-                        return Integer.compare(num1, num2);
-                    } catch (NumberFormatException e) {
-                        return f1.getName().compareTo(f2.getName());
-                    }
-                })
-                .collect(Collectors.toList());
+    /**
+     * The CPU-bound part of computing a row, created once the snippet has been read.
+     */
+    private interface RowTask<R> {
+        Optional<R> compute();
     }
 
+    private record PendingRow<T, R>(T snippet, Future<Optional<R>> row) {}
+
     /**
-     * Loads the "Mean" scores row from the ground truth CSV file.
-     * This method's logic can now be tested in isolation.
+     * Computes the row of each snippet and hands the rows to the consumer in the order of the snippets.
+     * With more than one thread, the work is split into stages: virtual threads read the snippets, a pool of the
+     * given number of threads computes the features, and the calling thread writes the rows in order. A thread
+     * waiting for slow storage therefore never holds up a feature computation. Only a bounded number of rows is
+     * in flight, so reading cannot run ahead of the writer and memory does not grow with the number of snippets.
+     *
+     * @param readFunction reads a snippet, which may block, and returns the computation of its row.
      */
-    private static String[] loadTruthScores(File truthFile) throws IOException {
-        try (BufferedReader br = new BufferedReader(new FileReader(truthFile))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (line.trim().startsWith("Mean")) {
-                    return line.split(",");
+    private static <T, R> void computeRows(Iterator<T> snippets, int threads, Function<T, RowTask<R>> readFunction,
+                                           RowConsumer<T, R> rowConsumer) throws IOException {
+        if (threads == 1) {
+            while (snippets.hasNext()) {
+                T snippet = snippets.next();
+                rowConsumer.accept(snippet, readFunction.apply(snippet).compute());
+            }
+            return;
+        }
+
+        int maxRowsInFlight = threads * ROWS_IN_FLIGHT_PER_THREAD;
+        ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            Deque<PendingRow<T, R>> rows = new ArrayDeque<>(maxRowsInFlight);
+            while (snippets.hasNext() || !rows.isEmpty()) {
+                while (snippets.hasNext() && rows.size() < maxRowsInFlight) {
+                    T snippet = snippets.next();
+                    CompletableFuture<Optional<R>> row = CompletableFuture
+                            .supplyAsync(() -> readFunction.apply(snippet), readers)
+                            .thenApplyAsync(RowTask::compute, workers);
+                    rows.add(new PendingRow<>(snippet, row));
                 }
+                PendingRow<T, R> pendingRow = rows.poll();
+                rowConsumer.accept(pendingRow.snippet(), awaitRow(pendingRow.row()));
             }
+        } finally {
+            readers.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    private static <R> void writeRow(RowOutput<R> output, Optional<R> row) throws IOException {
+        if (row.isPresent()) {
+            output.write(row.get());
         }
-        return null;
     }
 
     /**
-     * Contains the core logic for processing one file. Returns an Optional<String>
-     * containing the CSV row, or empty if the file should be skipped.
-     * This method is now highly testable without file system interaction.
+     * Waits for a row computed by a worker thread. Exceptions and stack overflows are already handled per file,
+     * so only other errors, such as running out of memory, end up here.
      */
-    private static Optional<String> processSingleFile(File file, String[] truthMeanScores, List<FeatureMetric> featureMetrics) {
+    private static <R> Optional<R> awaitRow(Future<Optional<R>> row) throws IOException {
         try {
-            String fileName = file.getName();
+            return row.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for feature rows");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compute feature row: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * Returns the previous row of the file if the manifest knows the file to be unchanged, and reads the file otherwise.
+     * An unchanged file whose row could not be computed in the previous run again gets no row, without being read.
+     * A computed row is recorded in the manifest with the attributes of the file, which are read before its content,
+     * so a snippet changed while it is read is not taken to be unchanged later. Rows that may come out differently
+     * in the next run, such as those of snippets over the time limit, are not recorded, so they are recomputed.
+     * Snippets skipped for lack of a truth score are neither read nor recorded.
+     */
+    private static <R> RowTask<R> reuseOrReadFile(PreviousRow previousRow, TruthScores truthScores,
+                                                  List<FeatureMetric> featureMetrics, ParseProfile parseProfile,
+                                                  SnippetLimits limits, RowOutput<R> output,
+                                                  PreviousRows<R> previousRows) {
+        SnippetManifest manifest = previousRows.manifest();
+        Path file = previousRow.file();
+        String fileName = file.getFileName().toString();
+        try {
+            if (manifest.isUnchanged(file, previousRow.row().isPresent())) {
+                if (previousRow.row().isEmpty()) {
+                    System.err.println("Warning: Snippet " + fileName + " had no row in the previous run and is unchanged. Skipping.");
+                    return Optional::empty;
+                }
+                R row = previousRows.reuse().apply(previousRow.row().get());
+                return () -> Optional.of(row);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading snippet file " + fileName + ": " + e.getMessage());
+            return Optional::empty;
+        }
+        // The attributes are read along with the content, so snippets without a truth score are not touched at all.
+        BasicFileAttributes[] attributes = new BasicFileAttributes[1];
+        Optional<ReadSnippet> snippet = readSnippet(fileName, () -> {
+            attributes[0] = Files.readAttributes(file, BasicFileAttributes.class);
+            return Files.readString(file);
+        }, truthScores);
+        return computeLater(snippet, featureMetrics, parseProfile, limits, output,
+                featureRow -> manifest.record(file, attributes[0], snippet.get().codeSnippet(), featureRow.isPresent()));
+    }
+
+    /**
+     * Loads the truth scores and reports if there are none.
+     *
+     * @param truthFile the ground truth csv file, or null if the rows are unlabelled.
+     * @return the truth scores, {@link TruthScores#UNLABELLED} without a ground truth file,
+     * or null if the ground truth file holds no valid score.
+     */
+    private static TruthScores loadTruthScores(File truthFile, PreprocessOptions options) throws IOException {
+        if (truthFile == null) {
+            return TruthScores.UNLABELLED;
+        }
+        TruthScores truthScores = TruthScores.load(truthFile, options.truthAggregate());
+        if (!truthScores.hasScores()) {
+            System.err.println("Error: Neither a 'Mean' row nor ratings found in ground truth file: " + truthFile.getAbsolutePath());
+            return null;
+        }
+        return truthScores;
+    }
+
+    /**
+     * Reads the content of a snippet once its row is known to be needed.
+     */
+    private interface SnippetReader {
+        String read() throws IOException;
+    }
+
+    /**
+     * A snippet that has been read and has a truth score, ready for its features to be computed.
+     */
+    private record ReadSnippet(String fileName, String codeSnippet, String truthLabel) {}
+
+    /**
+     * Reads one snippet if it has a truth score, so skipped files are never read. Unlabelled snippets are always read.
+     *
+     * @return the snippet, or empty if the file should be skipped.
+     */
+    private static Optional<ReadSnippet> readSnippet(String fileName, SnippetReader snippetReader, TruthScores truthScores) {
+        try {
+            if (truthScores == TruthScores.UNLABELLED) {
+                return Optional.of(new ReadSnippet(fileName, snippetReader.read(), UNKNOWN_LABEL));
+            }
+
             int fileNumber;
             try {
                 fileNumber = Integer.parseInt(fileName.substring(0, fileName.lastIndexOf('.')));
@@ -98,37 +549,84 @@ private static Optional<String> processSingleFile(File file, String[] truthMeanS
                 return Optional.empty();
             }
 
-            if (fileNumber <= 0 || fileNumber >= truthMeanScores.length) {
+            if (fileNumber <= 0 || fileNumber > truthScores.size()) {
                 System.err.println("Warning: No truth score found for snippet " + fileName + ". Skipping.");
                 return Optional.empty();
             }
 
-            double meanScoreValue;
-            try {
-                meanScoreValue = Double.parseDouble(truthMeanScores[fileNumber].trim());
-            } catch (NumberFormatException e) {
-                System.err.println("Error parsing truth score '" + truthMeanScores[fileNumber] + "' for " + fileName + ". Skipping.");
+            double truthScore = truthScores.getScore(fileNumber);
+            if (Double.isNaN(truthScore)) {
+                System.err.println("Error: No valid truth score for " + fileName + ". Skipping.");
                 return Optional.empty();
             }
 
-            String codeSnippet = Files.readString(file.toPath());
-            String truthSymbol = (meanScoreValue >= TRUTH_THRESHOLD) ? "Y" : "N";
+            String truthSymbol = (truthScore >= TRUTH_THRESHOLD) ? "Y" : "N";
+            return Optional.of(new ReadSnippet(fileName, snippetReader.read(), truthSymbol));
 
-            StringBuilder csvRow = new StringBuilder();
-            csvRow.append(fileName);
+        } catch (IOException e) {
+            System.err.println("Error reading snippet file " + fileName + ": " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Error computing metrics for file " + fileName + ": " + e.getMessage());
+        }
+        return Optional.empty();
+    }
 
-            for (FeatureMetric featureMetric : featureMetrics) {
-                csvRow.append(",").append(String.format("%.2f", featureMetric.computeMetric(codeSnippet)));
+    private static <R> RowTask<R> computeLater(Optional<ReadSnippet> snippet, List<FeatureMetric> featureMetrics,
+                                               ParseProfile parseProfile, SnippetLimits limits, RowOutput<R> output) {
+        return computeLater(snippet, featureMetrics, parseProfile, limits, output, featureRow -> {});
+    }
+
+    /**
+     * @param reproducibleRows receives the outcomes that every run with the same settings comes to: the computed rows,
+     *                         and empty if a row cannot be computed.
+     */
+    private static <R> RowTask<R> computeLater(Optional<ReadSnippet> snippet, List<FeatureMetric> featureMetrics,
+                                               ParseProfile parseProfile, SnippetLimits limits, RowOutput<R> output,
+                                               Consumer<Optional<FeatureRow>> reproducibleRows) {
+        return () -> snippet.flatMap(readSnippet ->
+                        computeFeatureRow(readSnippet, featureMetrics, parseProfile, limits, reproducibleRows))
+                .map(output::convert);
+    }
+
+    /**
+     * Contains the core logic for computing the features of one snippet. Returns an Optional<FeatureRow>
+     * containing the feature values, or empty if they could not be computed.
+     * The limits are checked before each metric; a snippet exceeding them gets a skipped row. So does a snippet
+     * nested so deeply that a metric overflows the stack, which would otherwise end the whole run.
+     *
+     * @param reproducibleRows receives the row unless it is a skipped row that may come out differently in another run,
+     *                         and empty if a metric fails, such as on a snippet that does not parse.
+     */
+    private static Optional<FeatureRow> computeFeatureRow(ReadSnippet snippet, List<FeatureMetric> featureMetrics,
+                                                          ParseProfile parseProfile, SnippetLimits limits,
+                                                          Consumer<Optional<FeatureRow>> reproducibleRows) {
+        try {
+            SnippetContext context = new SnippetContext(snippet.codeSnippet(), parseProfile, limits);
+
+            double[] values = new double[featureMetrics.size()];
+            for (int i = 0; i < values.length; i++) {
+                context.checkLimits();
+                values[i] = featureMetrics.get(i).computeMetricFrom(context);
             }
-            csvRow.append(",").append(truthSymbol);
 
-            return Optional.of(csvRow.toString());
+            FeatureRow featureRow = new FeatureRow(snippet.fileName(), values, snippet.truthLabel());
+            reproducibleRows.accept(Optional.of(featureRow));
+            return Optional.of(featureRow);
 
-        } catch (IOException e) {
-            System.err.println("Error reading snippet file " + file.getName() + ": " + e.getMessage());
+        } catch (SnippetLimitException e) {
+            System.err.println("Warning: Snippet " + snippet.fileName() + " exceeds the " + e.getMessage() + ". Skipping.");
+            FeatureRow featureRow = FeatureRow.skipped(snippet.fileName(), featureMetrics.size(), snippet.truthLabel());
+            if (e.isReproducible()) {
+                reproducibleRows.accept(Optional.of(featureRow));
+            }
+            return Optional.of(featureRow);
+        } catch (StackOverflowError e) {
+            System.err.println("Warning: Snippet " + snippet.fileName() + " is nested too deeply to compute its metrics. Skipping.");
+            return Optional.of(FeatureRow.skipped(snippet.fileName(), featureMetrics.size(), snippet.truthLabel()));
         } catch (Exception e) {
-            System.err.println("Error computing metrics for file " + file.getName() + ": " + e.getMessage());
+            System.err.println("Error computing metrics for file " + snippet.fileName() + ": " + e.getMessage());
+            reproducibleRows.accept(Optional.empty());
         }
         return Optional.empty();
     }
-}
\ No newline at end of file
+}
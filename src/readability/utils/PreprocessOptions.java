@@ -0,0 +1,51 @@
+package readability.utils;
+
+/**
+ * Settings of a preprocess run that are not tied to its input or output files.
+ *
+ * @param threads        the number of threads computing feature rows in parallel.
+ * @param precision      the number of decimal places of the feature values.
+ * @param truthAggregate how the ratings of a snippet are combined into its truth score.
+ * @param limits         the limits of the work spent on a single snippet.
+ */
+public record PreprocessOptions(int threads, int precision, TruthScores.Aggregate truthAggregate, SnippetLimits limits) {
+
+    public PreprocessOptions {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1, but was " + threads);
+        }
+        if (precision < 0) {
+            throw new IllegalArgumentException("The precision must not be negative, but was " + precision);
+        }
+        if (truthAggregate == null) {
+            throw new IllegalArgumentException("The truth aggregate must not be null");
+        }
+        if (limits == null) {
+            throw new IllegalArgumentException("The snippet limits must not be null");
+        }
+    }
+
+    /**
+     * @return the options of a sequential run writing two decimal places and labelling snippets by their mean rating,
+     * without limiting the work spent on a snippet.
+     */
+    public static PreprocessOptions defaults() {
+        return new PreprocessOptions(1, 2, TruthScores.Aggregate.MEAN, SnippetLimits.none());
+    }
+
+    public PreprocessOptions withThreads(int threads) {
+        return new PreprocessOptions(threads, precision, truthAggregate, limits);
+    }
+
+    public PreprocessOptions withPrecision(int precision) {
+        return new PreprocessOptions(threads, precision, truthAggregate, limits);
+    }
+
+    public PreprocessOptions withTruthAggregate(TruthScores.Aggregate truthAggregate) {
+        return new PreprocessOptions(threads, precision, truthAggregate, limits);
+    }
+
+    public PreprocessOptions withLimits(SnippetLimits limits) {
+        return new PreprocessOptions(threads, precision, truthAggregate, limits);
+    }
+}
@@ -0,0 +1,258 @@
+package readability.utils;
+
+import weka.classifiers.functions.Logistic;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.RemoveUseless;
+import weka.filters.unsupervised.attribute.ReplaceMissingValues;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A logistic regression model trained on a whole preprocessed dataset and saved, so that new snippets can be
+ * classified without training and cross-validating again. Besides the fitted {@link Logistic} classifier, the model
+ * holds the identifiers of the feature metrics in the order it expects their values, and the probability of being
+ * readable from which a snippet is classified as readable. Classifying is not thread-safe.
+ * <p>
+ * The coefficients of the classifier are also exported to a {@link LogisticScorer}, which classifies snippets
+ * without Weka. It is saved at the start of the model file, followed by the serialized classifier.
+ */
+public class ReadabilityModel {
+
+    private static final int MAGIC = 0x524d4431; // "RMD1"
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * The truth label of snippets rated readable.
+     */
+    public static final String READABLE_LABEL = "Y";
+
+    public static final double DEFAULT_THRESHOLD = 0.5;
+
+    private final Logistic classifier;
+    private final Instances header;
+    private final LogisticScorer scorer;
+    private final int readableIndex;
+
+    /**
+     * @param header the attributes of the training data, which are the feature metrics and the class.
+     * @param scorer the coefficients exported from the classifier.
+     */
+    private ReadabilityModel(Logistic classifier, Instances header, LogisticScorer scorer) {
+        this.classifier = classifier;
+        this.header = header;
+        this.scorer = scorer;
+        this.readableIndex = header.classAttribute().indexOfValue(READABLE_LABEL);
+    }
+
+    /**
+     * Trains the "logistic" classifier on all instances of the dataset. Like in {@link Classify#trainAndEvaluate},
+     * the identifier attribute is not used for training, so it is not part of the model either.
+     *
+     * @param dataset   the dataset with its class index set, as loaded by {@link Classify#loadDataset}.
+     * @param threshold the probability of being readable from which a snippet is classified as readable.
+     * @return the trained model.
+     * @throws IllegalArgumentException if the threshold is not a probability, a feature is not numeric,
+     *                                  or the class has no readable label.
+     * @throws Exception                if the classifier could not be trained.
+     */
+    public static ReadabilityModel train(Instances dataset, double threshold) throws Exception {
+        if (!(threshold > 0 && threshold < 1)) {
+            throw new IllegalArgumentException("The threshold must be between 0 and 1, but was " + threshold);
+        }
+        Instances features = new Instances(dataset);
+        Attribute identifier = features.attribute(Classify.ID_ATTRIBUTE);
+        if (identifier != null && identifier.index() != features.classIndex()) {
+            features.deleteAttributeAt(identifier.index());
+        }
+        for (int i = 0; i < features.numAttributes(); i++) {
+            if (i != features.classIndex() && !features.attribute(i).isNumeric()) {
+                throw new IllegalArgumentException("The feature " + features.attribute(i).name() + " is not numeric");
+            }
+        }
+        if (features.numClasses() != 2 || features.classAttribute().indexOfValue(READABLE_LABEL) < 0) {
+            throw new IllegalArgumentException("The class " + features.classAttribute().name()
+                    + " must have two values, one of them " + READABLE_LABEL);
+        }
+
+        Logistic logistic = new Logistic();
+        logistic.buildClassifier(features);
+        return new ReadabilityModel(logistic, new Instances(features, 0), exportCoefficients(logistic, features, threshold));
+    }
+
+    /**
+     * Takes the coefficients of the trained classifier in the units of the feature values. Before training, Logistic
+     * replaces missing values by the means of the training instances with a class, and removes the attributes that
+     * are useless as they hold a single value. The same filters are applied here to find the means and the removed
+     * features, which get a weight of 0. The coefficients of a binary Logistic favour the first class, so they are
+     * negated if the readable label is the second one; negating is exact, so the probabilities stay the same.
+     */
+    private static LogisticScorer exportCoefficients(Logistic logistic, Instances features, double threshold)
+            throws Exception {
+        Instances train = new Instances(features);
+        train.deleteWithMissingClass();
+        ReplaceMissingValues replaceMissingValues = new ReplaceMissingValues();
+        replaceMissingValues.setInputFormat(train);
+        Instances replaced = Filter.useFilter(train, replaceMissingValues);
+        RemoveUseless removeUseless = new RemoveUseless();
+        removeUseless.setInputFormat(replaced);
+        Instances useful = Filter.useFilter(replaced, removeUseless);
+
+        // An instance of missing values comes out of the filter holding the means.
+        Instance missing = new DenseInstance(train.numAttributes());
+        missing.setDataset(train);
+        replaceMissingValues.input(missing);
+        Instance means = replaceMissingValues.output();
+
+        double[][] coefficients = logistic.coefficients();
+        double sign = features.classAttribute().indexOfValue(READABLE_LABEL) == 0 ? 1 : -1;
+        List<String> identifiers = featureIdentifiersOf(features);
+        double[] weights = new double[identifiers.size()];
+        double[] featureMeans = new double[identifiers.size()];
+        for (int i = 0; i < identifiers.size(); i++) {
+            featureMeans[i] = means.value(features.attribute(identifiers.get(i)).index());
+            Attribute usefulAttribute = useful.attribute(identifiers.get(i));
+            if (usefulAttribute != null) {
+                // The first row holds the intercept, followed by the rows of the attributes other than the class.
+                int index = usefulAttribute.index();
+                int row = index < useful.classIndex() ? index + 1 : index;
+                weights[i] = sign * coefficients[row][0];
+            }
+        }
+        return new LogisticScorer(identifiers, sign * coefficients[0][0], weights, featureMeans, threshold);
+    }
+
+    private static List<String> featureIdentifiersOf(Instances header) {
+        List<String> identifiers = new ArrayList<>(header.numAttributes() - 1);
+        for (int i = 0; i < header.numAttributes(); i++) {
+            if (i != header.classIndex()) {
+                identifiers.add(header.attribute(i).name());
+            }
+        }
+        return identifiers;
+    }
+
+    /**
+     * Loads a model saved by {@link #save}.
+     *
+     * @param file the file the model was saved to.
+     * @return the loaded model.
+     * @throws IOException if the file could not be read or is not a model.
+     */
+    public static ReadabilityModel load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a readability model");
+            }
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Readability model " + file + " was written in a different format, train it again");
+            }
+            LogisticScorer scorer = LogisticScorer.read(in);
+
+            ObjectInputStream objects = new ObjectInputStream(in);
+            Logistic classifier = (Logistic) objects.readObject();
+            Instances header = (Instances) objects.readObject();
+            if (!featureIdentifiersOf(header).equals(scorer.getFeatureIdentifiers())) {
+                throw new IOException("Readability model " + file + " is corrupt");
+            }
+            return new ReadabilityModel(classifier, header, scorer);
+        } catch (EOFException e) {
+            throw new IOException("Readability model " + file + " is truncated", e);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Readability model " + file + " is corrupt", e);
+        }
+    }
+
+    /**
+     * Saves the model, replacing the file atomically. The file starts with the exported coefficients, including the
+     * threshold and the identifiers of the feature metrics, followed by the serialized classifier and the attributes
+     * of its training data.
+     *
+     * @param file the file to save the model to.
+     * @throws IOException if the file could not be written.
+     */
+    public void save(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            scorer.write(out);
+
+            ObjectOutputStream objects = new ObjectOutputStream(out);
+            objects.writeObject(classifier);
+            objects.writeObject(header);
+            objects.flush();
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the identifiers of the feature metrics, in the order {@link #probabilityReadable} expects their values.
+     */
+    public List<String> getFeatureIdentifiers() {
+        return scorer.getFeatureIdentifiers();
+    }
+
+    public double getThreshold() {
+        return scorer.getThreshold();
+    }
+
+    public Logistic getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * @return the coefficients of the classifier, which classify snippets like it without Weka.
+     */
+    public LogisticScorer getScorer() {
+        return scorer;
+    }
+
+    /**
+     * Computes the probability that a snippet is readable with the Weka classifier. Missing values, NaN, are replaced
+     * by the means of the training data, like Weka does. {@link LogisticScorer} computes the same probability faster.
+     *
+     * @param values the value of each feature metric, in the order of {@link #getFeatureIdentifiers}.
+     * @return the probability of being readable.
+     */
+    public double probabilityReadable(double[] values) {
+        if (values.length != getFeatureIdentifiers().size()) {
+            throw new IllegalArgumentException("Expected " + getFeatureIdentifiers().size() + " values, but got "
+                    + values.length);
+        }
+        double[] instanceValues = new double[header.numAttributes()];
+        int feature = 0;
+        for (int i = 0; i < instanceValues.length; i++) {
+            instanceValues[i] = i == header.classIndex() ? Utils.missingValue() : values[feature++];
+        }
+        Instance instance = new DenseInstance(1.0, instanceValues);
+        instance.setDataset(header);
+        try {
+            return classifier.distributionForInstance(instance)[readableIndex];
+        } catch (Exception e) {
+            // The instance is built from the training attributes, so the classifier has no reason to reject it.
+            throw new IllegalStateException("Failed to classify snippet", e);
+        }
+    }
+
+    /**
+     * @param probability the probability of being readable, see {@link #probabilityReadable}.
+     * @return true if a snippet with this probability is classified as readable.
+     */
+    public boolean isReadable(double probability) {
+        return scorer.isReadable(probability);
+    }
+}
@@ -0,0 +1,235 @@
+package readability.utils;
+
+import com.github.javaparser.ParseException;
+import com.github.javaparser.TokenRange;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Holds everything the feature metrics derive from a single code snippet, so that
+ * the snippet is parsed at most once no matter how many metrics are computed on it.
+ * The parsed code and the line index are built lazily on first access.
+ * Instances are not thread-safe and are meant to be confined to the thread processing the snippet.
+ */
+public class SnippetContext {
+
+    /**
+     * The visitor of each thread, reset for every snippet whose metrics the thread collects,
+     * so that its tables are allocated once per thread rather than once per snippet.
+     */
+    private static final ThreadLocal<ThreadMetrics> THREAD_METRICS = ThreadLocal.withInitial(ThreadMetrics::new);
+
+    private final String codeSnippet;
+
+    private final ParseProfile parseProfile;
+
+    private final SnippetLimits limits;
+
+    /**
+     * The {@link System#nanoTime} at which the time limit started.
+     */
+    private final long startTime;
+
+    private BodyDeclaration<?> parsedCode;
+
+    /**
+     * Remembers a failed parse so that every metric sees the same error without parsing again.
+     */
+    private ParseException parseFailure;
+
+    private int[] lineOffsets;
+
+    private byte[] contentHash;
+
+    public SnippetContext(String codeSnippet) {
+        this(codeSnippet, ParseProfile.FULL);
+    }
+
+    /**
+     * @param codeSnippet  The code of the respective .jsnp as a String
+     * @param parseProfile The profile to parse the snippet with, if any metric asks for the parsed code.
+     */
+    public SnippetContext(String codeSnippet, ParseProfile parseProfile) {
+        this(codeSnippet, parseProfile, SnippetLimits.none());
+    }
+
+    /**
+     * @param codeSnippet  The code of the respective .jsnp as a String
+     * @param parseProfile The profile to parse the snippet with, if any metric asks for the parsed code.
+     * @param limits       The limits of the work spent on the snippet. The time limit starts now.
+     */
+    public SnippetContext(String codeSnippet, ParseProfile parseProfile, SnippetLimits limits) {
+        this.codeSnippet = codeSnippet;
+        this.parseProfile = parseProfile;
+        this.limits = limits;
+        this.startTime = System.nanoTime();
+    }
+
+    public String getCodeSnippet() {
+        return codeSnippet;
+    }
+
+    /**
+     * @return true if the snippet is null or only consists of whitespace.
+     */
+    public boolean isBlank() {
+        return codeSnippet == null || codeSnippet.isBlank();
+    }
+
+    /**
+     * Checks the size and time limits of the snippet. Called between the steps of computing its features,
+     * and regularly while the snippet is parsed and its tree is walked, so that a step stalling on a snippet
+     * is aborted once the time is up rather than after it ends.
+     *
+     * @throws SnippetLimitException if the snippet is too long or its time is up.
+     */
+    public void checkLimits() {
+        if (codeSnippet != null && codeSnippet.length() > limits.maxCharacters()) {
+            throw new SnippetLimitException("size limit of " + limits.maxCharacters() + " characters");
+        }
+        if (limits.limitsTime() && (System.nanoTime() - startTime) / 1_000_000 > limits.maxMillis()) {
+            throw new SnippetLimitException("time limit of " + limits.maxMillis() + " ms", false);
+        }
+    }
+
+    /**
+     * Returns the parsed code snippet, parsing it on the first call.
+     *
+     * @return The parsed code snippet ready to accept JavaParser visitors.
+     * @throws ParseException if the code snippet could not be parsed by the JavaParser library.
+     * @throws SnippetLimitException if the snippet exceeds one of its limits, or is nested too deeply for JavaParser,
+     *                               whose recursive descent overflows the stack.
+     * @throws IllegalStateException if the context was created with {@link ParseProfile#NONE}.
+     */
+    public BodyDeclaration<?> getParsedCode() throws ParseException {
+        if (parsedCode == null) {
+            if (parseFailure == null) {
+                checkLimits();
+                try {
+                    BodyDeclaration<?> parsed = Parser.parseJavaSnippet(codeSnippet, parseProfile, this::checkLimits);
+                    checkLimits();
+                    if (limits.limitsNodes() && exceedsNodeLimit(parsed)) {
+                        throw new SnippetLimitException("node limit of " + limits.maxNodes() + " AST nodes");
+                    }
+                    parsedCode = parsed;
+                } catch (ParseException e) {
+                    parseFailure = e;
+                } catch (StackOverflowError e) {
+                    // How deep the parser gets depends on the stack left to the thread, so this is not reproducible.
+                    throw new SnippetLimitException("nesting depth the parser can handle", false);
+                }
+            }
+            if (parseFailure != null) {
+                throw parseFailure;
+            }
+        }
+        return parsedCode;
+    }
+
+    /**
+     * Counts the nodes of the tree, checking the limits in between. Counting stops at the first node over the limit,
+     * so huge trees are not walked in full.
+     */
+    private boolean exceedsNodeLimit(Node root) {
+        long counted = 0;
+        for (Iterator<Node> nodes = root.stream().iterator(); nodes.hasNext(); nodes.next()) {
+            if (++counted > limits.maxNodes()) {
+                return true;
+            }
+            if (counted % SnippetLimits.NODES_PER_CHECK == 0) {
+                checkLimits();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the tokens of the parsed code snippet, empty if the parse profile does not store tokens.
+     * @throws ParseException if the code snippet could not be parsed by the JavaParser library.
+     */
+    public Optional<TokenRange> getTokenRange() throws ParseException {
+        return getParsedCode().getTokenRange();
+    }
+
+    /**
+     * Returns the operands, operators and decision points of the parsed code snippet,
+     * collecting them in a single AST walk unless the thread's visitor already holds the counts of this snippet.
+     *
+     * @return the visitor of the calling thread holding the collected counts. It is reset as soon as the thread
+     *         collects the metrics of another snippet, so the counts must be read before that.
+     * @throws ParseException if the code snippet could not be parsed by the JavaParser library.
+     */
+    public CodeMetricsVisitor getCodeMetrics() throws ParseException {
+        ThreadMetrics metrics = THREAD_METRICS.get();
+        if (metrics.countedSnippet != this) {
+            metrics.countedSnippet = null;
+            metrics.visitor.reset();
+            metrics.visitor.visit(getParsedCode(), this::checkLimits);
+            metrics.countedSnippet = this;
+        }
+        return metrics.visitor;
+    }
+
+    /**
+     * Returns the offsets at which each line of the snippet starts. Lines are separated by '\n',
+     * so the first entry is always 0 and a trailing line break yields a final, empty line.
+     *
+     * @return the start offset of every line in the snippet.
+     */
+    public int[] getLineOffsets() {
+        if (lineOffsets == null) {
+            lineOffsets = computeLineOffsets(codeSnippet == null ? "" : codeSnippet);
+        }
+        return lineOffsets;
+    }
+
+    /**
+     * @return the SHA-256 hash of the snippet's UTF-8 encoded content.
+     */
+    public byte[] getContentHash() {
+        if (contentHash == null) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                contentHash = digest.digest((codeSnippet == null ? "" : codeSnippet).getBytes(StandardCharsets.UTF_8));
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform is required to support SHA-256.
+                throw new IllegalStateException(e);
+            }
+        }
+        return contentHash;
+    }
+
+    private static int[] computeLineOffsets(String code) {
+        int lineBreaks = 0;
+        for (int i = 0; i < code.length(); i++) {
+            if (code.charAt(i) == '\n') {
+                lineBreaks++;
+            }
+        }
+
+        int[] offsets = new int[lineBreaks + 1];
+        int line = 1;
+        for (int i = 0; i < code.length(); i++) {
+            if (code.charAt(i) == '\n') {
+                offsets[line++] = i + 1;
+            }
+        }
+        return offsets;
+    }
+
+    private static final class ThreadMetrics {
+
+        private final CodeMetricsVisitor visitor = new CodeMetricsVisitor();
+
+        /**
+         * The snippet whose counts the visitor holds, or null while it holds none.
+         */
+        private SnippetContext countedSnippet;
+    }
+}
@@ -0,0 +1,32 @@
+package readability.utils;
+
+/**
+ * Thrown when a snippet exceeds one of its {@link SnippetLimits}. It is unchecked, so it passes through
+ * the feature metrics and AST visitors up to the code computing the row of the snippet.
+ */
+public class SnippetLimitException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean reproducible;
+
+    public SnippetLimitException(String message) {
+        this(message, true);
+    }
+
+    /**
+     * @param reproducible false if the snippet may not exceed the limit in another run, such as the time limit,
+     *                     which depends on the load of the machine.
+     */
+    public SnippetLimitException(String message, boolean reproducible) {
+        super(message);
+        this.reproducible = reproducible;
+    }
+
+    /**
+     * @return true if the snippet exceeds the limit in every run with the same limits.
+     */
+    public boolean isReproducible() {
+        return reproducible;
+    }
+}
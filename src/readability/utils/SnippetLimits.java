@@ -0,0 +1,53 @@
+package readability.utils;
+
+/**
+ * Bounds the work spent on a single snippet, so that one pathological snippet cannot stall a whole run.
+ * A snippet exceeding a limit is skipped with a marked row instead of holding up the rows after it.
+ *
+ * @param maxCharacters the maximum length of a snippet in characters.
+ * @param maxMillis     the maximum wall time in milliseconds spent on computing the features of a snippet.
+ * @param maxNodes      the maximum number of nodes in the AST of a snippet.
+ */
+public record SnippetLimits(int maxCharacters, long maxMillis, int maxNodes) {
+
+    /**
+     * The number of AST nodes walked between two checks of the limits.
+     */
+    public static final int NODES_PER_CHECK = 1024;
+
+    public SnippetLimits {
+        if (maxCharacters < 1 || maxMillis < 1 || maxNodes < 1) {
+            throw new IllegalArgumentException("Snippet limits must be at least 1");
+        }
+    }
+
+    /**
+     * @return limits that never skip a snippet.
+     */
+    public static SnippetLimits none() {
+        return new SnippetLimits(Integer.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    public SnippetLimits withMaxCharacters(int maxCharacters) {
+        return new SnippetLimits(maxCharacters, maxMillis, maxNodes);
+    }
+
+    public SnippetLimits withMaxMillis(long maxMillis) {
+        return new SnippetLimits(maxCharacters, maxMillis, maxNodes);
+    }
+
+    public SnippetLimits withMaxNodes(int maxNodes) {
+        return new SnippetLimits(maxCharacters, maxMillis, maxNodes);
+    }
+
+    public boolean limitsTime() {
+        return maxMillis != Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if the number of AST nodes is limited, so the nodes have to be counted after parsing.
+     */
+    public boolean limitsNodes() {
+        return maxNodes != Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,288 @@
+package readability.utils;
+
+import readability.features.FeatureMetric;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the size, modification time and content hash of every snippet a csv row was written for, so that an
+ * incremental preprocess run can reuse the rows of unchanged snippets from the previous csv without reading them.
+ * Snippets whose row could not be computed in any run, such as those that do not parse, are remembered as well,
+ * so that they are not read again while they are unchanged.
+ * Snippets are identified by their path relative to the source directory. The manifest also records the settings
+ * the rows were computed with; if they differ, no row is reused.
+ * <p>
+ * The previous csv is not loaded into memory. Its rows are in the same sorted order as the snippets of the new run,
+ * so it is read alongside them, one row at a time, by {@link #previousRow}. Checking and recording snippets is
+ * thread-safe.
+ */
+public class SnippetManifest implements Closeable {
+
+    private static final int MAGIC = 0x52534d31; // "RSM1"
+    private static final int FORMAT_VERSION = 3;
+
+    /**
+     * @param hasRow false if no row could be computed for the snippet, so it has none in the csv.
+     */
+    private record Entry(long size, long lastModified, byte[] contentHash, boolean hasRow) {}
+
+    private final Path file;
+    private final Path sourceDir;
+    private final String settings;
+
+    /**
+     * The entries of the previous run, only read after opening.
+     */
+    private final Map<String, Entry> previousEntries = new HashMap<>();
+
+    /**
+     * Reads the rows of the previous csv in order, or null if no row can be reused.
+     */
+    private BufferedReader previousCsv;
+
+    /**
+     * The next row of the previous csv that no snippet has been matched with, or null at its end.
+     */
+    private String pendingRow;
+
+    /**
+     * The entries of the snippets seen in this run. Snippets that were deleted are not carried over.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private SnippetManifest(Path file, Path sourceDir, String settings) {
+        this.file = file;
+        this.sourceDir = sourceDir;
+        this.settings = settings;
+    }
+
+    /**
+     * Opens the manifest stored in the given file together with the csv written in the previous run.
+     * If either does not exist or the settings changed, the manifest starts empty and every row is recomputed.
+     * The previous csv stays open until the manifest is closed, so the new csv must be written to another file.
+     *
+     * @param file        the file the manifest is loaded from and saved to.
+     * @param sourceDir   the directory containing the snippets.
+     * @param settings    the settings of this run, see {@link #settingsOf}.
+     * @param previousCsv the csv written in the previous run, which is about to be replaced.
+     * @return the opened manifest.
+     * @throws IOException if the manifest or the csv exist but could not be read.
+     */
+    public static SnippetManifest open(Path file, Path sourceDir, String settings, Path previousCsv) throws IOException {
+        SnippetManifest manifest = new SnippetManifest(file, sourceDir, settings);
+        if (!Files.exists(file) || !Files.exists(previousCsv)) {
+            return manifest;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a snippet manifest");
+            }
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(settings)) {
+                System.err.println("Warning: Settings changed since the last run, recomputing all rows.");
+                return manifest;
+            }
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                byte[] contentHash = new byte[in.readUnsignedByte()];
+                in.readFully(contentHash);
+                boolean hasRow = in.readBoolean();
+                manifest.previousEntries.put(path, new Entry(size, lastModified, contentHash, hasRow));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Snippet manifest " + file + " is truncated", e);
+        }
+
+        manifest.previousCsv = Files.newBufferedReader(previousCsv, StandardCharsets.UTF_8);
+        manifest.previousCsv.readLine(); // header
+        manifest.pendingRow = manifest.previousCsv.readLine();
+        return manifest;
+    }
+
+    /**
+     * Describes everything besides the snippets that the csv rows depend on.
+     *
+     * @param featureMetrics the feature metrics computed for each snippet.
+     * @param options        the options of the run.
+     * @param truth          the ground truth csv file.
+     * @return the settings to pass to {@link #open}.
+     * @throws IOException if the ground truth file could not be read.
+     */
+    public static String settingsOf(List<FeatureMetric> featureMetrics, PreprocessOptions options, File truth)
+            throws IOException {
+        StringBuilder settings = new StringBuilder("metrics=");
+        for (FeatureMetric featureMetric : featureMetrics) {
+            settings.append(featureMetric.getComputationKey()).append(',');
+        }
+        settings.append(";precision=").append(options.precision());
+        settings.append(";aggregate=").append(options.truthAggregate());
+        settings.append(";limits=").append(options.limits().maxCharacters()).append(',')
+                .append(options.limits().maxMillis()).append(',').append(options.limits().maxNodes());
+        settings.append(";truth=").append(toHex(sha256(Files.readAllBytes(truth.toPath()))));
+        return settings.toString();
+    }
+
+    /**
+     * Finds the row written for the given snippet in the previous run by reading the previous csv up to it.
+     * Rows of snippets that are no longer there are passed over. Must be called for the snippets in their sorted order,
+     * from a single thread; should the previous csv not be in that order, its rows are recomputed.
+     *
+     * @param snippet the snippet file.
+     * @return the previous csv row, or empty if there is none.
+     * @throws IOException if the previous csv could not be read.
+     */
+    public Optional<String> previousRow(Path snippet) throws IOException {
+        String fileName = snippet.getFileName().toString();
+        long number = SnippetWalker.numberOf(fileName);
+        while (pendingRow != null) {
+            int endOfFileName = pendingRow.indexOf(',');
+            String rowFileName = endOfFileName < 0 ? pendingRow : pendingRow.substring(0, endOfFileName);
+            int order = Long.compare(SnippetWalker.numberOf(rowFileName), number);
+            if (order == 0) {
+                order = rowFileName.compareTo(fileName);
+            }
+            if (order > 0) {
+                break;
+            }
+            String row = pendingRow;
+            pendingRow = previousCsv.readLine();
+            if (order == 0) {
+                return Optional.of(row);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Checks whether the given snippet did not change since the previous run computed its row, or found that it has
+     * none, recording it if so. Only the file attributes are read, unless the modification time changed but the size
+     * did not, in which case the content hash decides.
+     *
+     * @param snippet        the snippet file.
+     * @param hasPreviousRow true if {@link #previousRow} found a row of the snippet.
+     * @return true if the outcome of the previous run can be reused, which is the previous row if there is one and
+     * no row otherwise, false if the row has to be computed.
+     * @throws IOException if the snippet could not be read.
+     */
+    public boolean isUnchanged(Path snippet, boolean hasPreviousRow) throws IOException {
+        String path = pathOf(snippet);
+        Entry previous = previousEntries.get(path);
+        if (previous == null || previous.hasRow() != hasPreviousRow) {
+            return false;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(snippet, BasicFileAttributes.class);
+        if (attributes.size() != previous.size()) {
+            return false;
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (lastModified == previous.lastModified()) {
+            entries.put(path, previous);
+            return true;
+        }
+
+        byte[] contentHash = sha256(Files.readAllBytes(snippet));
+        if (!Arrays.equals(contentHash, previous.contentHash())) {
+            return false;
+        }
+        entries.put(path, new Entry(previous.size(), lastModified, contentHash, previous.hasRow()));
+        return true;
+    }
+
+    /**
+     * Records a snippet whose row is computed in this run, once its content is read. Only outcomes that every run with
+     * the same settings comes to are recorded; any other snippet is not recorded and is recomputed in the next run.
+     *
+     * @param snippet     the snippet file.
+     * @param attributes  the attributes of the snippet file, read before its content.
+     * @param codeSnippet the content of the snippet file.
+     * @param hasRow      false if no row could be computed for the snippet.
+     */
+    public void record(Path snippet, BasicFileAttributes attributes, String codeSnippet, boolean hasRow) {
+        byte[] contentHash = sha256(codeSnippet.getBytes(StandardCharsets.UTF_8));
+        entries.put(pathOf(snippet),
+                new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), contentHash, hasRow));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private String pathOf(Path snippet) {
+        return sourceDir.relativize(snippet).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Saves the entries of this run, replacing the file atomically.
+     * Must only be called once the csv of this run has been written completely.
+     *
+     * @throws IOException if the manifest could not be written.
+     */
+    public void save() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(settings);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().size());
+                out.writeLong(entry.getValue().lastModified());
+                out.writeByte(entry.getValue().contentHash().length);
+                out.write(entry.getValue().contentHash());
+                out.writeBoolean(entry.getValue().hasRow());
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Closes the previous csv.
+     *
+     * @throws IOException if the previous csv could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (previousCsv != null) {
+            previousCsv.close();
+        }
+    }
+
+    private static byte[] sha256(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,219 @@
+package readability.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * A whole snippet corpus packed into a single file, so that preprocessing does not open every snippet on its own.
+ * The file starts with a header pointing to an index at its end, which holds the path of each snippet relative to
+ * the packed directory, and the offset and length of its content. The snippets are stored in the order of
+ * {@link SnippetWalker}. An opened pack is memory-mapped and decodes snippets on demand; it is thread-safe.
+ */
+public class SnippetPack {
+
+    private static final int MAGIC = 0x52535031; // "RSP1"
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The magic number, the format version and the offset of the index.
+     */
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    /**
+     * A single mapping is limited to 2 GB, so larger packs are mapped in segments of this size.
+     */
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final ByteBuffer[] segments;
+    private final long segmentSize;
+
+    private final String[] names;
+    private final long[] offsets;
+    private final int[] lengths;
+
+    private SnippetPack(ByteBuffer[] segments, long segmentSize, String[] names, long[] offsets, int[] lengths) {
+        this.segments = segments;
+        this.segmentSize = segmentSize;
+        this.names = names;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    /**
+     * @return true if the source is a snippet pack, judged by its .pack suffix.
+     */
+    public static boolean isPack(Path source) {
+        return Files.isRegularFile(source) && source.getFileName().toString().toLowerCase().endsWith(".pack");
+    }
+
+    /**
+     * Packs the .jsnp files of a directory tree into a single file, which is replaced atomically.
+     *
+     * @param sourceDir the directory containing the snippets.
+     * @param packFile  the file to write the pack to.
+     * @param threads   the number of threads listing directories in parallel.
+     * @return the number of packed snippets.
+     * @throws IOException if a snippet could not be read or the pack could not be written.
+     */
+    public static int write(Path sourceDir, Path packFile, int threads) throws IOException {
+        List<Path> sortedFiles = SnippetWalker.findSnippetFiles(sourceDir, threads);
+        long[] offsets = new long[sortedFiles.size()];
+        int[] lengths = new int[sortedFiles.size()];
+
+        Path directory = packFile.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, packFile.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(0); // the index offset, written once it is known
+
+            long position = HEADER_SIZE;
+            for (int i = 0; i < sortedFiles.size(); i++) {
+                byte[] content = Files.readAllBytes(sortedFiles.get(i));
+                out.write(content);
+                offsets[i] = position;
+                lengths[i] = content.length;
+                position += content.length;
+            }
+
+            long indexOffset = position;
+            out.writeInt(sortedFiles.size());
+            for (int i = 0; i < sortedFiles.size(); i++) {
+                out.writeUTF(sourceDir.relativize(sortedFiles.get(i)).toString().replace(File.separatorChar, '/'));
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+            }
+            out.flush();
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, indexOffset), Integer.BYTES + Integer.BYTES);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, packFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return sortedFiles.size();
+    }
+
+    /**
+     * Opens a pack by memory-mapping it and loading its index.
+     *
+     * @param packFile the file written by {@link #write}.
+     * @return the opened pack.
+     * @throws IOException if the file could not be read or is not a snippet pack.
+     */
+    public static SnippetPack open(Path packFile) throws IOException {
+        return open(packFile, SEGMENT_SIZE);
+    }
+
+    static SnippetPack open(Path packFile, long segmentSize) throws IOException {
+        ByteBuffer[] segments;
+        long size;
+        try (FileChannel channel = FileChannel.open(packFile, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException(packFile + " is not a snippet pack");
+            }
+            // Mappings stay valid after the channel is closed.
+            segments = new ByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * segmentSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, size - start));
+            }
+        }
+
+        if (segments[0].getInt(0) != MAGIC) {
+            throw new IOException(packFile + " is not a snippet pack");
+        }
+        if (segments[0].getInt(Integer.BYTES) != FORMAT_VERSION) {
+            throw new IOException("Snippet pack " + packFile + " was written in a different format, pack it again");
+        }
+        long indexOffset = segments[0].getLong(Integer.BYTES + Integer.BYTES);
+        if (indexOffset < HEADER_SIZE || indexOffset > size) {
+            throw new IOException("Snippet pack " + packFile + " is corrupt");
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(packFile)))) {
+            in.skipNBytes(indexOffset);
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Snippet pack " + packFile + " is corrupt");
+            }
+            String[] names = new String[count];
+            long[] offsets = new long[count];
+            int[] lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = in.readUTF();
+                offsets[i] = in.readLong();
+                lengths[i] = in.readInt();
+                if (offsets[i] < HEADER_SIZE || lengths[i] < 0 || offsets[i] + lengths[i] > indexOffset) {
+                    throw new IOException("Snippet pack " + packFile + " is corrupt");
+                }
+            }
+            return new SnippetPack(segments, segmentSize, names, offsets, lengths);
+        } catch (EOFException e) {
+            throw new IOException("Snippet pack " + packFile + " is truncated", e);
+        }
+    }
+
+    /**
+     * @return the number of snippets in the pack.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return the path of the snippet relative to the packed directory.
+     */
+    public String getName(int snippet) {
+        return names[snippet];
+    }
+
+    /**
+     * @return the file name of the snippet, which holds its number.
+     */
+    public String getFileName(int snippet) {
+        return names[snippet].substring(names[snippet].lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Decodes the content of a snippet from the mapped file. Like {@link Files#readString}, malformed input is rejected.
+     *
+     * @param snippet the index of the snippet.
+     * @return the code of the snippet.
+     * @throws CharacterCodingException if the snippet is not valid UTF-8.
+     */
+    public String read(int snippet) throws CharacterCodingException {
+        long offset = offsets[snippet];
+        int length = lengths[snippet];
+        int segment = (int) (offset / segmentSize);
+        int position = (int) (offset % segmentSize);
+
+        ByteBuffer content;
+        if (position + length <= segments[segment].capacity()) {
+            content = segments[segment].slice(position, length);
+        } else {
+            // The snippet spans the boundary of two segments.
+            byte[] bytes = new byte[length];
+            int copied = 0;
+            while (copied < length) {
+                int chunk = Math.min(length - copied, segments[segment].capacity() - position);
+                segments[segment].get(position, bytes, copied, chunk);
+                copied += chunk;
+                segment++;
+                position = 0;
+            }
+            content = ByteBuffer.wrap(bytes);
+        }
+        return StandardCharsets.UTF_8.newDecoder().decode(content).toString();
+    }
+}
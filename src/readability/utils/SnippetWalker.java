@@ -0,0 +1,155 @@
+package readability.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the .jsnp files in a directory tree and sorts them by snippet number.
+ * Each directory is listed once with a {@link DirectoryStream}; with more than one thread, subdirectories are
+ * listed in parallel. Only entries that do not end with .jsnp are checked for being a directory, so a directory
+ * of snippets is listed without reading the attributes of every file. Symbolic links to directories are not followed.
+ */
+public class SnippetWalker {
+
+    /**
+     * A snippet file with its sort key, which is computed once when the file is found.
+     *
+     * @param path   the path of the snippet file.
+     * @param number the number in the file name, or {@link #NO_NUMBER} if the name is not a number.
+     */
+    private record Snippet(Path path, long number) {}
+
+    /**
+     * Snippets without a number are sorted after all numbered ones.
+     */
+    private static final long NO_NUMBER = Long.MAX_VALUE;
+
+    /**
+     * Numbered snippets are sorted by number, the others by name. Equally named snippets in different directories
+     * are ordered by their path, which places them next to each other to be rejected.
+     */
+    private static final Comparator<Snippet> SNIPPET_ORDER = Comparator.comparingLong(Snippet::number)
+            .thenComparing(snippet -> snippet.path().getFileName().toString())
+            .thenComparing(Snippet::path);
+
+    /**
+     * Finds and sorts the .jsnp files in the given directory and all its subdirectories.
+     *
+     * @param sourceDir the root of the directory tree.
+     * @param threads   the number of threads listing directories in parallel.
+     * @return the snippet files in sorted order, empty if there are none.
+     * @throws IOException if a directory could not be listed, or two snippets in different directories have the same
+     *                     name. A snippet is identified by its name in the rows and the ground truth, so equally
+     *                     named snippets could not be told apart.
+     */
+    public static List<Path> findSnippetFiles(Path sourceDir, int threads) throws IOException {
+        ConcurrentLinkedQueue<Snippet> snippets = new ConcurrentLinkedQueue<>();
+        if (threads == 1) {
+            List<Path> directories = new ArrayList<>();
+            directories.add(sourceDir);
+            while (!directories.isEmpty()) {
+                directories.addAll(listDirectory(directories.remove(directories.size() - 1), snippets));
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.invoke(new ListDirectoryAction(sourceDir, snippets));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        List<Snippet> sortedSnippets = new ArrayList<>(snippets);
+        sortedSnippets.sort(SNIPPET_ORDER);
+        List<Path> sortedFiles = new ArrayList<>(sortedSnippets.size());
+        for (Snippet snippet : sortedSnippets) {
+            Path path = snippet.path();
+            if (!sortedFiles.isEmpty()) {
+                Path previous = sortedFiles.get(sortedFiles.size() - 1);
+                if (previous.getFileName().toString().equals(path.getFileName().toString())) {
+                    throw new IOException("The snippets " + sourceDir.relativize(previous) + " and "
+                            + sourceDir.relativize(path) + " have the same name, rename one of them");
+                }
+            }
+            sortedFiles.add(path);
+        }
+        return sortedFiles;
+    }
+
+    /**
+     * Lists one directory, adding its snippets to the given queue.
+     *
+     * @return the subdirectories of the directory.
+     */
+    private static List<Path> listDirectory(Path directory, ConcurrentLinkedQueue<Snippet> snippets) throws IOException {
+        List<Path> subdirectories = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                String fileName = entry.getFileName().toString();
+                if (fileName.toLowerCase().endsWith(".jsnp")) {
+                    snippets.add(new Snippet(entry, numberOf(fileName)));
+                } else if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    subdirectories.add(entry);
+                }
+            }
+        }
+        return subdirectories;
+    }
+
+    /**
+     * @return the number in the given snippet file name, or {@link #NO_NUMBER} if the name is not a number.
+     */
+    static long numberOf(String fileName) {
+        int extension = fileName.lastIndexOf('.');
+        if (extension < 0) {
+            return NO_NUMBER;
+        }
+        try {
+            return Integer.parseInt(fileName.substring(0, extension));
+        } catch (NumberFormatException e) {
+            return NO_NUMBER;
+        }
+    }
+
+    /**
+     * Lists a directory and forks an action for each of its subdirectories.
+     */
+    private static class ListDirectoryAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        // Tasks are serializable only by inheritance; the action never leaves the walk.
+        private final transient Path directory;
+        private final ConcurrentLinkedQueue<Snippet> snippets;
+
+        ListDirectoryAction(Path directory, ConcurrentLinkedQueue<Snippet> snippets) {
+            this.directory = directory;
+            this.snippets = snippets;
+        }
+
+        @Override
+        protected void compute() {
+            List<ListDirectoryAction> actions = new ArrayList<>();
+            try {
+                for (Path subdirectory : listDirectory(directory, snippets)) {
+                    actions.add(new ListDirectoryAction(subdirectory, snippets));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            invokeAll(actions);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package readability.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Counts the occurrences of strings in an open-addressing hash table with linear probing.
+ * Unlike a {@code Map<String, Integer>}, counting does not box and each distinct string is stored once.
+ * After {@link #reset()}, the table is reused with its current capacity. Instances are not thread-safe.
+ */
+public class StringCounter {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private String[] keys;
+    private int[] counts;
+
+    /**
+     * The number of distinct strings.
+     */
+    private int size;
+
+    /**
+     * The number of occurrences of all strings.
+     */
+    private int total;
+
+    public StringCounter() {
+        keys = new String[INITIAL_CAPACITY];
+        counts = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Counts one occurrence of the given string.
+     *
+     * @param key the string, must not be null.
+     */
+    public void add(String key) {
+        Objects.requireNonNull(key);
+        int mask = keys.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        while (true) {
+            String existing = keys[slot];
+            if (existing == null) {
+                keys[slot] = key;
+                counts[slot] = 1;
+                total++;
+                // A table at most half full keeps the probe sequences short.
+                if (++size * 2 > keys.length) {
+                    grow();
+                }
+                return;
+            }
+            if (existing == key || existing.equals(key)) {
+                counts[slot]++;
+                total++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * @return the number of occurrences of the given string, 0 if it was never counted.
+     */
+    public int get(String key) {
+        int mask = keys.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        String existing;
+        while ((existing = keys[slot]) != null) {
+            if (existing.equals(key)) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the number of distinct strings.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of occurrences of all strings.
+     */
+    public int total() {
+        return total;
+    }
+
+    /**
+     * Forgets all strings, but keeps the capacity of the table for the next snippet.
+     */
+    public void reset() {
+        if (size > 0) {
+            Arrays.fill(keys, null);
+            Arrays.fill(counts, 0);
+        }
+        size = 0;
+        total = 0;
+    }
+
+    /**
+     * Passes each distinct string with its number of occurrences to the given consumer, in no particular order.
+     */
+    public void forEach(ObjIntConsumer<String> consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                consumer.accept(keys[slot], counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * @return the counts as a map, for callers that need to look at every string.
+     */
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> map = new HashMap<>(size * 2);
+        forEach(map::put);
+        return map;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new String[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = spread(oldKeys[i].hashCode()) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Scrambles the hash and folds its high bits into the low bits, which select the slot.
+     */
+    private static int spread(int hash) {
+        int scrambled = hash * 0x9e3779b9;
+        return scrambled ^ (scrambled >>> 16);
+    }
+}
@@ -0,0 +1,227 @@
+package readability.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the regular file entries of a tar archive one after another, straight from a stream.
+ * Only the content of entries accepted by the filter is read, all others are skipped.
+ * Gzip compressed archives are detected by their magic number. Besides plain ustar headers, the long names
+ * of GNU tar and the path records of pax headers are understood, which covers archives written by common tools.
+ * Instances are not thread-safe.
+ */
+public class TarReader implements Closeable {
+
+    /**
+     * An entry of the archive together with its content.
+     *
+     * @param name    the path of the entry inside the archive.
+     * @param content the bytes of the entry.
+     */
+    public record Entry(String name, byte[] content) {}
+
+    private static final int BLOCK_SIZE = 512;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private final InputStream in;
+    private final Predicate<String> entryFilter;
+    private final byte[] header = new byte[BLOCK_SIZE];
+
+    /**
+     * @param in          the tar archive, optionally gzip compressed.
+     * @param entryFilter decides by the path of an entry whether it is returned.
+     * @throws IOException if the archive could not be read.
+     */
+    public TarReader(InputStream in, Predicate<String> entryFilter) throws IOException {
+        this.entryFilter = entryFilter;
+        BufferedInputStream buffered = new BufferedInputStream(in, 1 << 16);
+        buffered.mark(2);
+        int magic = buffered.read() | (buffered.read() << 8);
+        buffered.reset();
+        this.in = magic == GZIP_MAGIC ? new BufferedInputStream(new GZIPInputStream(buffered), 1 << 16) : buffered;
+    }
+
+    /**
+     * Reads the next accepted regular file entry, skipping directories, links and other special entries.
+     *
+     * @return the next entry, or null at the end of the archive.
+     * @throws IOException if the archive could not be read or is malformed.
+     */
+    public Entry next() throws IOException {
+        String longName = null;
+        while (readBlock(header)) {
+            if (isZeroBlock(header)) {
+                return null;
+            }
+            long size = parseNumber(header, 124, 12);
+            if (size < 0) {
+                throw new IOException("Malformed entry size in tar header");
+            }
+            byte type = header[156];
+            String name = longName != null ? longName : nameOf(header);
+            longName = null;
+
+            switch (type) {
+                case '0', 0, '7' -> {
+                    if (entryFilter.test(name)) {
+                        return new Entry(name, readContent(size));
+                    }
+                    skipContent(size);
+                }
+                case 'L' -> longName = trimNull(new String(readContent(size), StandardCharsets.UTF_8));
+                case 'x' -> longName = paxPath(readContent(size));
+                default -> skipContent(size);
+            }
+        }
+        return null;
+    }
+
+    private static String nameOf(byte[] header) {
+        String name = string(header, 0, 100);
+        // The ustar format keeps the leading directories of long names in a separate prefix field.
+        if (string(header, 257, 6).startsWith("ustar")) {
+            String prefix = string(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * @return the path record of a pax extended header, or null if it has none.
+     */
+    private static String paxPath(byte[] records) throws IOException {
+        String path = null;
+        int position = 0;
+        while (position < records.length) {
+            int space = position;
+            while (space < records.length && records[space] != ' ') {
+                space++;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(new String(records, position, space - position, StandardCharsets.UTF_8));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed pax header in tar archive", e);
+            }
+            if (length <= 0 || position + length > records.length) {
+                throw new IOException("Malformed pax header in tar archive");
+            }
+            // Each record reads "<length> <key>=<value>\n".
+            String record = new String(records, space + 1, position + length - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) {
+                path = record.substring("path=".length());
+            }
+            position += length;
+        }
+        return path;
+    }
+
+    /**
+     * Parses an octal number field, or a base-256 field as written by GNU tar for large values.
+     */
+    private static long parseNumber(byte[] header, int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7f;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (header[i] & 0xff);
+            }
+            return value;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Malformed number in tar header");
+            }
+            value = (value << 3) | (b - '0');
+        }
+        return value;
+    }
+
+    private byte[] readContent(long size) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Tar entry of " + size + " bytes is too large to be read");
+        }
+        byte[] content = new byte[(int) size];
+        readFully(content, content.length);
+        skipPadding(size);
+        return content;
+    }
+
+    private void skipContent(long size) throws IOException {
+        long remaining = size;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Tar archive is truncated");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        skipPadding(size);
+    }
+
+    private void skipPadding(long size) throws IOException {
+        int padding = (int) ((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+        if (padding > 0) {
+            readFully(new byte[padding], padding);
+        }
+    }
+
+    private boolean readBlock(byte[] block) throws IOException {
+        int read = in.readNBytes(block, 0, BLOCK_SIZE);
+        if (read == 0) {
+            return false;
+        }
+        if (read < BLOCK_SIZE) {
+            throw new EOFException("Tar archive is truncated");
+        }
+        return true;
+    }
+
+    private void readFully(byte[] buffer, int length) throws IOException {
+        if (in.readNBytes(buffer, 0, length) < length) {
+            throw new EOFException("Tar archive is truncated");
+        }
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String string(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String trimNull(String name) {
+        int end = name.indexOf('\0');
+        return end < 0 ? name : name.substring(0, end);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,135 @@
+package readability.utils;
+
+import com.github.javaparser.GeneratedJavaParserConstants;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts how often each token text occurs in a snippet and computes the Shannon entropy of the texts.
+ * Keywords, operators and separators always have the same text, so they are counted in an array indexed by
+ * their token kind. Only identifiers, literals, whitespace and comments are counted by text, in a {@link StringCounter}.
+ * Counting a token never allocates, and the histogram can be reset for the next snippet.
+ * Instances are not thread-safe.
+ */
+public class TokenHistogram {
+
+    private static final double INVERSE_LN_2 = 1 / Math.log(2);
+
+    /**
+     * The bin of each token kind with a fixed text, or -1 for kinds whose text varies.
+     * Kinds with the same text share a bin, so they are counted like tokens of a single text.
+     */
+    private static final int[] BIN_OF_KIND;
+
+    /**
+     * The text of the tokens counted in each bin, and the other way round.
+     */
+    private static final String[] TEXT_OF_BIN;
+    private static final Map<String, Integer> BIN_OF_TEXT;
+
+    static {
+        String[] tokenImages = GeneratedJavaParserConstants.tokenImage;
+        BIN_OF_KIND = new int[tokenImages.length];
+        Map<String, Integer> bins = new HashMap<>();
+        for (int kind = 0; kind < tokenImages.length; kind++) {
+            String image = tokenImages[kind];
+            // The image of a fixed token is its quoted text. Images with escapes are left to the string counter.
+            if (image.length() > 2 && image.startsWith("\"") && image.endsWith("\"") && image.indexOf('\\') < 0) {
+                BIN_OF_KIND[kind] = bins.computeIfAbsent(image.substring(1, image.length() - 1), text -> bins.size());
+            } else {
+                BIN_OF_KIND[kind] = -1;
+            }
+        }
+        TEXT_OF_BIN = new String[bins.size()];
+        bins.forEach((text, bin) -> TEXT_OF_BIN[bin] = text);
+        BIN_OF_TEXT = Map.copyOf(bins);
+    }
+
+    private final int[] fixedCounts = new int[TEXT_OF_BIN.length];
+
+    private final StringCounter variableCounts = new StringCounter();
+
+    private int total;
+
+    /**
+     * Counts one token.
+     *
+     * @param kind the kind of the token, one of {@link GeneratedJavaParserConstants}.
+     * @param text the text of the token.
+     */
+    public void add(int kind, String text) {
+        int bin = kind >= 0 && kind < BIN_OF_KIND.length ? BIN_OF_KIND[kind] : -1;
+        // The text is compared, so a token whose text differs from its kind's image is still counted correctly.
+        if (bin >= 0 && text.equals(TEXT_OF_BIN[bin])) {
+            fixedCounts[bin]++;
+        } else {
+            variableCounts.add(text);
+        }
+        total++;
+    }
+
+    /**
+     * @return the number of counted tokens.
+     */
+    public int total() {
+        return total;
+    }
+
+    /**
+     * @return the Shannon entropy in bits of the token texts, 0 if no token was counted.
+     */
+    public double entropy() {
+        if (total == 0) {
+            return 0.0;
+        }
+        double sum = 0.0;
+        for (int bin = 0; bin < fixedCounts.length; bin++) {
+            int count = fixedCounts[bin];
+            if (count > 0) {
+                // Identifiers such as contextual keywords may share the text of a fixed token.
+                sum += plogp(count + variableCounts.get(TEXT_OF_BIN[bin]));
+            }
+        }
+        double[] variableSum = {0.0};
+        variableCounts.forEach((text, count) -> {
+            if (!sharesFixedBin(text)) {
+                variableSum[0] += plogp(count);
+            }
+        });
+        return -(sum + variableSum[0]) * INVERSE_LN_2;
+    }
+
+    /**
+     * @return the number of occurrences of each token text, for callers that need to look at every text.
+     */
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> map = variableCounts.toMap();
+        for (int bin = 0; bin < fixedCounts.length; bin++) {
+            if (fixedCounts[bin] > 0) {
+                map.merge(TEXT_OF_BIN[bin], fixedCounts[bin], Integer::sum);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Forgets all tokens, keeping the tables for the next snippet.
+     */
+    public void reset() {
+        Arrays.fill(fixedCounts, 0);
+        variableCounts.reset();
+        total = 0;
+    }
+
+    private double plogp(int count) {
+        double p = (double) count / total;
+        return p * Math.log(p);
+    }
+
+    private boolean sharesFixedBin(String text) {
+        Integer bin = BIN_OF_TEXT.get(text);
+        return bin != null && fixedCounts[bin] > 0;
+    }
+}
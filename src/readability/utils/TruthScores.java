@@ -0,0 +1,235 @@
+package readability.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * The human readability score of each snippet, aggregated from the ground truth csv.
+ * The first row of the csv names the snippet columns, every further row holds the ratings of one rater,
+ * except for an optional row labelled "Mean" holding precomputed means.
+ * The csv is streamed line by line and the scores are kept in a single primitive array.
+ */
+public class TruthScores {
+
+    /**
+     * How the ratings of a snippet are combined into its score.
+     */
+    public enum Aggregate {
+        /**
+         * The mean rating. Taken from the "Mean" row if the csv has one, so the scores match the published ones.
+         */
+        MEAN,
+        /**
+         * The median rating, which is less sensitive to single raters.
+         * Unlike the mean, it needs all ratings in memory.
+         */
+        MEDIAN
+    }
+
+    /**
+     * Stands for the missing ground truth of snippets that are only classified, so none of them has a score.
+     */
+    public static final TruthScores UNLABELLED = new TruthScores(new double[0]);
+
+    /**
+     * The score of snippet n at index n - 1, NaN if the snippet has no valid score.
+     */
+    private final double[] scores;
+
+    private TruthScores(double[] scores) {
+        this.scores = scores;
+    }
+
+    /**
+     * Loads the mean score of each snippet.
+     *
+     * @param truthFile the ground truth csv file.
+     * @return the scores of the snippets.
+     * @throws IOException if the file could not be read.
+     */
+    public static TruthScores load(File truthFile) throws IOException {
+        return load(truthFile, Aggregate.MEAN);
+    }
+
+    /**
+     * Loads the score of each snippet, aggregated from the ratings in the ground truth csv.
+     * Empty or malformed ratings are ignored. If the csv has a "Mean" row, it is used for {@link Aggregate#MEAN}
+     * and its malformed entries leave the respective snippet without a score.
+     *
+     * @param truthFile the ground truth csv file.
+     * @param aggregate how the ratings of a snippet are combined.
+     * @return the scores of the snippets.
+     * @throws IOException if the file could not be read.
+     */
+    public static TruthScores load(File truthFile, Aggregate aggregate) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(truthFile.toPath(), StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return new TruthScores(new double[0]);
+            }
+            int snippets = countCells(header) - 1;
+
+            double[] sums = new double[snippets];
+            int[] counts = new int[snippets];
+            double[] meanRow = null;
+            // Only the median needs every rating, stored rater by rater.
+            double[] ratings = aggregate == Aggregate.MEDIAN ? new double[snippets * 16] : null;
+            int raters = 0;
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().startsWith("Mean")) {
+                    meanRow = new double[countCells(line) - 1];
+                    parseCells(line, meanRow);
+                    continue;
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (ratings != null) {
+                    if ((raters + 1) * snippets > ratings.length) {
+                        ratings = Arrays.copyOf(ratings, Math.max(ratings.length * 2, (raters + 1) * snippets));
+                    }
+                    parseCells(line, ratings, raters * snippets, snippets);
+                } else {
+                    accumulateCells(line, sums, counts);
+                }
+                raters++;
+            }
+
+            return switch (aggregate) {
+                case MEAN -> new TruthScores(meanRow != null ? meanRow : means(sums, counts));
+                case MEDIAN -> new TruthScores(medians(ratings, raters, snippets));
+            };
+        }
+    }
+
+    /**
+     * @return the number of snippet columns.
+     */
+    public int size() {
+        return scores.length;
+    }
+
+    /**
+     * @param snippetNumber the number of the snippet, starting at 1.
+     * @return the score of the snippet, or NaN if it has no valid score or the number is out of range.
+     */
+    public double getScore(int snippetNumber) {
+        if (snippetNumber < 1 || snippetNumber > scores.length) {
+            return Double.NaN;
+        }
+        return scores[snippetNumber - 1];
+    }
+
+    /**
+     * @return true if at least one snippet has a valid score.
+     */
+    public boolean hasScores() {
+        for (double score : scores) {
+            if (!Double.isNaN(score)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double[] means(double[] sums, int[] counts) {
+        double[] means = new double[sums.length];
+        for (int i = 0; i < sums.length; i++) {
+            means[i] = counts[i] == 0 ? Double.NaN : sums[i] / counts[i];
+        }
+        return means;
+    }
+
+    private static double[] medians(double[] ratings, int raters, int snippets) {
+        double[] medians = new double[snippets];
+        double[] column = new double[raters];
+        for (int snippet = 0; snippet < snippets; snippet++) {
+            int count = 0;
+            for (int rater = 0; rater < raters; rater++) {
+                double rating = ratings[rater * snippets + snippet];
+                if (!Double.isNaN(rating)) {
+                    column[count++] = rating;
+                }
+            }
+            if (count == 0) {
+                medians[snippet] = Double.NaN;
+                continue;
+            }
+            Arrays.sort(column, 0, count);
+            medians[snippet] = count % 2 == 1 ? column[count / 2] : (column[count / 2 - 1] + column[count / 2]) / 2;
+        }
+        return medians;
+    }
+
+    private static int countCells(String line) {
+        int cells = 1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == ',') {
+                cells++;
+            }
+        }
+        return cells;
+    }
+
+    private static void parseCells(String line, double[] values) {
+        parseCells(line, values, 0, values.length);
+    }
+
+    /**
+     * Parses the cells after the label of a row into the given array, NaN for missing or malformed cells.
+     */
+    private static void parseCells(String line, double[] values, int offset, int snippets) {
+        Arrays.fill(values, offset, offset + snippets, Double.NaN);
+        int start = line.indexOf(',') + 1;
+        for (int snippet = 0; snippet < snippets && start > 0; snippet++) {
+            int end = line.indexOf(',', start);
+            values[offset + snippet] = parseCell(line, start, end < 0 ? line.length() : end);
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Adds the valid cells after the label of a row to the sums and counts of their columns.
+     */
+    private static void accumulateCells(String line, double[] sums, int[] counts) {
+        int start = line.indexOf(',') + 1;
+        for (int snippet = 0; snippet < sums.length && start > 0; snippet++) {
+            int end = line.indexOf(',', start);
+            double rating = parseCell(line, start, end < 0 ? line.length() : end);
+            if (!Double.isNaN(rating)) {
+                sums[snippet] += rating;
+                counts[snippet]++;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Parses one cell. Single digits, the usual rating on a Likert scale, are parsed without creating a string.
+     */
+    private static double parseCell(String line, int start, int end) {
+        while (start < end && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        if (end - start == 1 && line.charAt(start) >= '0' && line.charAt(start) <= '9') {
+            return line.charAt(start) - '0';
+        }
+        if (start == end) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(line.substring(start, end));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package readability.features;
+
+import com.github.javaparser.ParseException;
+import readability.utils.FeatureCache;
+import readability.utils.ParseProfile;
+import readability.utils.SnippetContext;
+import readability.utils.SnippetLimitException;
+import readability.utils.SnippetLimits;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedFeatureMetricTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FeatureCache cache;
+
+    /**
+     * Counts how often it is actually computed.
+     */
+    static class CountingFeature extends FeatureMetric {
+        int computations;
+
+        @Override
+        public double computeMetric(String codeSnippet) {
+            computations++;
+            return codeSnippet.length();
+        }
+
+        @Override
+        public String getIdentifier() {
+            return "Counting";
+        }
+    }
+
+    /**
+     * Fails on snippets starting with '!' as if they did not parse, and on snippets starting with '?' otherwise.
+     */
+    static class FailingFeature extends CountingFeature {
+        @Override
+        public double computeMetric(String codeSnippet) {
+            computations++;
+            if (codeSnippet.startsWith("!")) {
+                throw new RuntimeException("Failed to parse code snippet", new ParseException("Could not parse"));
+            }
+            if (codeSnippet.startsWith("?")) {
+                throw new IllegalStateException("Not a parse failure");
+            }
+            return codeSnippet.length();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cache = FeatureCache.open(tempDir.resolve("cache.bin"), 100);
+    }
+
+    @Test
+    void testCacheHitSkipsComputation() throws Exception {
+        CountingFeature feature = new CountingFeature();
+        CachedFeatureMetric cached = new CachedFeatureMetric(feature, cache);
+
+        assertEquals(6.0, cached.computeMetricFrom(new SnippetContext("int a;")));
+        assertEquals(6.0, cached.computeMetricFrom(new SnippetContext("int a;")));
+        assertEquals(1, feature.computations);
+
+        assertEquals(7.0, cached.computeMetricFrom(new SnippetContext("int ab;")));
+        assertEquals(2, feature.computations);
+    }
+
+    @Test
+    void testCacheHitDoesNotParse() throws Exception {
+        CachedFeatureMetric cached = new CachedFeatureMetric(new CyclomaticComplexityFeature(), cache);
+        String code = "void m() { if (a) {} }";
+        assertEquals(2.0, cached.computeMetric(code));
+
+        // A context that cannot parse still gets the cached value.
+        assertEquals(2.0, cached.computeMetricFrom(new SnippetContext(code, ParseProfile.NONE)));
+    }
+
+    @Test
+    void testDelegatesIdentifierProfileAndVersion() {
+        CachedFeatureMetric cached = new CachedFeatureMetric(new HalsteadVolumeFeature(), cache);
+        assertEquals("HalsteadVolume", cached.getIdentifier());
+        assertEquals(ParseProfile.LEAN, cached.getParseProfile());
+        assertEquals(1, cached.getVersion());
+    }
+
+    @Test
+    void testTokenEntropyModesDoNotShareValues() throws Exception {
+        String unparseable = "int a = ;";
+        CachedFeatureMetric lexerOnly = new CachedFeatureMetric(new TokenEntropyFeature(true), cache);
+        lexerOnly.computeMetric(unparseable);
+
+        CachedFeatureMetric parsing = new CachedFeatureMetric(new TokenEntropyFeature(), cache);
+        assertThrows(RuntimeException.class, () -> parsing.computeMetric(unparseable));
+    }
+
+    @Test
+    void testNodeLimitAppliesToCachedValues() throws Exception {
+        String code = "void m() { int x = " + "1 + ".repeat(200) + "1; }";
+        new CachedFeatureMetric(new CyclomaticComplexityFeature(), cache).computeMetric(code);
+
+        SnippetLimits limits = SnippetLimits.none().withMaxNodes(100);
+        CachedFeatureMetric limited = new CachedFeatureMetric(new CyclomaticComplexityFeature(), cache, limits);
+        SnippetContext context = new SnippetContext(code, ParseProfile.LEAN, limits);
+        assertThrows(SnippetLimitException.class, () -> limited.computeMetricFrom(context));
+    }
+
+    @Test
+    void testMetricsDoNotShareValues() throws Exception {
+        CachedFeatureMetric lines = new CachedFeatureMetric(new NumberLinesFeature(), cache);
+        CachedFeatureMetric complexity = new CachedFeatureMetric(new CyclomaticComplexityFeature(), cache);
+        String code = "void m() {\n if (a) {}\n}";
+        assertEquals(3.0, lines.computeMetric(code));
+        assertEquals(2.0, complexity.computeMetric(code));
+    }
+
+    @Test
+    void testParseFailuresAreCached() {
+        FailingFeature feature = new FailingFeature();
+        CachedFeatureMetric cached = new CachedFeatureMetric(feature, cache);
+
+        assertThrows(RuntimeException.class, () -> cached.computeMetricFrom(new SnippetContext("!int a;")));
+        assertThrows(ParseException.class, () -> cached.computeMetricFrom(new SnippetContext("!int a;")));
+        assertEquals(1, feature.computations);
+    }
+
+    @Test
+    void testOtherFailuresAreNotCached() {
+        FailingFeature feature = new FailingFeature();
+        CachedFeatureMetric cached = new CachedFeatureMetric(feature, cache);
+
+        assertThrows(IllegalStateException.class, () -> cached.computeMetricFrom(new SnippetContext("?int a;")));
+        assertThrows(IllegalStateException.class, () -> cached.computeMetricFrom(new SnippetContext("?int a;")));
+        assertEquals(2, feature.computations);
+        assertEquals(0, cache.size());
+    }
+}
@@ -1,7 +1,6 @@
 package readability.features;
 
-import com.github.javaparser.ast.body.BodyDeclaration;
-import readability.utils.Parser;
+import readability.utils.SnippetContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.lang.reflect.Method;
@@ -23,10 +22,9 @@ void setUp() {
 
     // Helper method to test the private countDecisionPoints method using reflection.
     private int invokeCountDecisionPoints(String code) throws Exception {
-        BodyDeclaration<?> ast = Parser.parseJavaSnippet(code);
-        Method method = CyclomaticComplexityFeature.class.getDeclaredMethod("countDecisionPoints", BodyDeclaration.class);
+        Method method = CyclomaticComplexityFeature.class.getDeclaredMethod("countDecisionPoints", SnippetContext.class);
         method.setAccessible(true);
-        return (int) method.invoke(feature, ast);
+        return (int) method.invoke(feature, new SnippetContext(code));
     }
 
     @Test
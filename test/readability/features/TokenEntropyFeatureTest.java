@@ -1,15 +1,20 @@
 package readability.features;
 
+import com.github.javaparser.GeneratedJavaParserConstants;
+import readability.utils.ParseProfile;
+import readability.utils.SnippetContext;
+import readability.utils.TokenHistogram;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.lang.reflect.Method;
 import java.util.Map;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * A comprehensive test suite for TokenEntropyFeature to achieve high coverage.
- * It uses reflection to test private calculation methods with boundary cases.
+ * It uses reflection to test the private token counting, and a token histogram for the entropy boundary cases.
  */
 class TokenEntropyFeatureTest {
 
@@ -20,18 +25,22 @@ void setUp() {
         feature = new TokenEntropyFeature();
     }
 
-    private double invokeCalculateEntropy(Map<String, Integer> freqMap) throws Exception {
-        Method method = TokenEntropyFeature.class.getDeclaredMethod("calculateEntropyFromFrequencies", Map.class);
-        method.setAccessible(true);
-        return (double) method.invoke(feature, freqMap);
+    private double invokeCalculateEntropy(Map<String, Integer> freqMap) {
+        TokenHistogram histogram = new TokenHistogram();
+        freqMap.forEach((text, frequency) -> {
+            for (int i = 0; i < frequency; i++) {
+                histogram.add(GeneratedJavaParserConstants.IDENTIFIER, text);
+            }
+        });
+        return histogram.entropy();
     }
 
     private Map<String, Integer> invokeCalculateFrequencies(String code) throws Exception {
-        Method method = TokenEntropyFeature.class.getDeclaredMethod("calculateTokenFrequencies", String.class);
+        Method method = TokenEntropyFeature.class.getDeclaredMethod("countTokens", SnippetContext.class, TokenHistogram.class);
         method.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        Map<String, Integer> result = (Map<String, Integer>) method.invoke(feature, code);
-        return result;
+        TokenHistogram histogram = new TokenHistogram();
+        method.invoke(feature, new SnippetContext(code), histogram);
+        return histogram.toMap();
     }
 
     @Test
@@ -96,4 +105,35 @@ void testCalculateFrequencies_ForSimpleSnippet() throws Exception {
         assertEquals(4, freqMap.size()); // "int", " ", "a", ";"
         assertEquals(1, freqMap.get("int"));
     }
+
+    @Test
+    void testLexerOnlyMode_SameEntropyAsParser() {
+        String code = "int f(int a) { return a > 0 ? a >> 1 : -a; }";
+        assertEquals(feature.computeMetric(code), new TokenEntropyFeature(true).computeMetric(code));
+    }
+
+    @Test
+    void testLexerOnlyMode_DoesNotParse() {
+        assertEquals(ParseProfile.NONE, new TokenEntropyFeature(true).getParseProfile());
+        assertEquals(ParseProfile.TOKENS, feature.getParseProfile());
+    }
+
+    @Test
+    void testLexerOnlyMode_ComputesUnparseableSnippet() {
+        // The syntax error is not detected without a parse: "int", "a", "=" and ";" once and " " three times.
+        double expected = -(4 * (1.0 / 7) * Math.log(1.0 / 7) + (3.0 / 7) * Math.log(3.0 / 7)) / Math.log(2);
+        assertEquals(expected, new TokenEntropyFeature(true).computeMetric("int a = ;"), 1e-12);
+        assertThrows(RuntimeException.class, () -> feature.computeMetric("int a = ;"));
+    }
+
+    @Test
+    void testLexerOnlyMode_HasItsOwnComputationKey() {
+        assertEquals(feature.getIdentifier(), new TokenEntropyFeature(true).getIdentifier());
+        assertNotEquals(feature.getComputationKey(), new TokenEntropyFeature(true).getComputationKey());
+    }
+
+    @Test
+    void testLexerOnlyMode_WithBlankInput() {
+        assertEquals(0.0, new TokenEntropyFeature(true).computeMetric(" \n"));
+    }
 }
@@ -0,0 +1,32 @@
+package readability.subcommands;
+
+import readability.features.FeatureMetric;
+import readability.features.TokenEntropyFeature;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeatureConverterTest {
+
+    @Test
+    void testForIdentifierFindsEveryMetric() {
+        FeatureConverter converter = new FeatureConverter();
+        for (String metric : new String[]{"lines", "h_volume", "token_entropy", "cyclomatic_complexity"}) {
+            FeatureMetric featureMetric = converter.convert(metric);
+            assertEquals(featureMetric.getComputationKey(),
+                    FeatureConverter.forIdentifier(featureMetric.getIdentifier()).getComputationKey());
+        }
+    }
+
+    @Test
+    void testTokenEntropyIsComputedByParsing() {
+        FeatureMetric featureMetric = FeatureConverter.forIdentifier("TokenEntropy");
+        assertEquals(new TokenEntropyFeature().getComputationKey(), featureMetric.getComputationKey());
+        assertNotEquals(new TokenEntropyFeature(true).getComputationKey(), featureMetric.getComputationKey());
+    }
+
+    @Test
+    void testForIdentifierRejectsUnknownColumns() {
+        assertThrows(IllegalArgumentException.class, () -> FeatureConverter.forIdentifier("Truth"));
+    }
+}
@@ -4,12 +4,20 @@
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import weka.classifiers.Evaluation;
+import weka.classifiers.functions.Logistic;
+import weka.classifiers.meta.FilteredClassifier;
 import weka.core.Instances;
+import weka.core.converters.CSVLoader;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -84,4 +92,161 @@ void testTrainAndEvaluate() throws Exception {
         assertNotNull(eval, "The Evaluation object should not be null.");
         assertEquals(dataset.size(), eval.numInstances(), "Evaluation should have been run on all instances.");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testFeatureMatrixLoadsLikeCsv() throws Exception {
+        File csv = tempDir.resolve("features.csv").toFile();
+        FeatureMatrix.Builder builder = new FeatureMatrix.Builder(List.of("feature1", "feature2"));
+        try (FileWriter writer = new FileWriter(csv)) {
+            writer.write("File,feature1,feature2,Truth\n");
+            for (int i = 1; i <= 10; i++) {
+                String truth = i % 3 == 0 ? "N" : "Y";
+                writer.write(i + ".jsnp," + i + ".25," + (20 - i) + ".5," + truth + "\n");
+                builder.add(new FeatureRow(i + ".jsnp", new double[]{i + 0.25, 20 - i + 0.5}, truth));
+            }
+        }
+        File bin = tempDir.resolve("features.bin").toFile();
+        builder.write(bin.toPath());
+
+        Instances fromCsv = Classify.loadDataset(csv);
+        Instances fromBin = Classify.loadDataset(bin);
+        assertEquals(fromCsv.relationName(), fromBin.relationName());
+        assertEquals(fromCsv.classIndex(), fromBin.classIndex());
+        for (int i = 0; i < fromCsv.numAttributes(); i++) {
+            assertEquals(fromCsv.attribute(i).toString(), fromBin.attribute(i).toString());
+        }
+        for (int i = 0; i < fromCsv.size(); i++) {
+            assertArrayEquals(fromCsv.get(i).toDoubleArray(), fromBin.get(i).toDoubleArray());
+        }
+
+        Evaluation csvEvaluation = Classify.trainAndEvaluate(fromCsv);
+        Evaluation binEvaluation = Classify.trainAndEvaluate(fromBin);
+        assertEquals(csvEvaluation.pctCorrect(), binEvaluation.pctCorrect());
+    }
+
+    @Test
+    void testParallelFoldsEvaluateLikeSequentialFolds() throws Exception {
+        File csv = tempDir.resolve("noisy.csv").toFile();
+        Random random = new Random(42);
+        try (FileWriter writer = new FileWriter(csv)) {
+            writer.write("feature1,feature2,feature3,class\n");
+            for (int i = 0; i < 97; i++) {
+                double x = random.nextGaussian();
+                double y = random.nextGaussian();
+                String truth = x + 0.5 * y + random.nextGaussian() > 0 ? "Y" : "N";
+                writer.write(x + "," + y + "," + random.nextDouble() + "," + truth + "\n");
+            }
+        }
+        Instances dataset = Classify.loadDataset(csv);
+
+        Evaluation sequential = Classify.trainAndEvaluate(dataset, 1);
+        for (int threads : new int[]{2, 4, 16}) {
+            Evaluation parallel = Classify.trainAndEvaluate(dataset, threads);
+
+            assertEquals(sequential.toSummaryString(), parallel.toSummaryString());
+            assertEquals(sequential.toClassDetailsString(), parallel.toClassDetailsString());
+            assertEquals(sequential.toMatrixString(), parallel.toMatrixString());
+            assertEquals(sequential.pctCorrect(), parallel.pctCorrect());
+            assertEquals(sequential.areaUnderROC(0), parallel.areaUnderROC(0));
+            assertEquals(sequential.fMeasure(0), parallel.fMeasure(0));
+            assertEquals(sequential.SFMeanEntropyGain(), parallel.SFMeanEntropyGain());
+        }
+    }
+
+    @Test
+    void testIdentifierIsNotUsedForTraining() throws Exception {
+        File csv = tempDir.resolve("identified.csv").toFile();
+        Random random = new Random(7);
+        try (FileWriter writer = new FileWriter(csv)) {
+            writer.write("File,feature1,feature2,Truth\n");
+            for (int i = 1; i <= 60; i++) {
+                double x = random.nextGaussian();
+                String truth = x + random.nextGaussian() > 0 ? "Y" : "N";
+                writer.write(i + ".jsnp," + x + "," + random.nextGaussian() + "," + truth + "\n");
+            }
+        }
+        Instances dataset = Classify.loadDataset(csv);
+        Instances withoutIdentifier = new Instances(dataset);
+        withoutIdentifier.deleteAttributeAt(0);
+
+        assertInstanceOf(FilteredClassifier.class, Classify.newClassifier(dataset));
+        assertInstanceOf(Logistic.class, Classify.newClassifier(withoutIdentifier));
+
+        Evaluation eval = Classify.trainAndEvaluate(dataset);
+        Evaluation expected = Classify.trainAndEvaluate(withoutIdentifier);
+        assertEquals(Classify.ID_ATTRIBUTE, dataset.attribute(0).name(), "The identifier should stay in the dataset.");
+        assertEquals(expected.toSummaryString(), eval.toSummaryString());
+        assertEquals(expected.areaUnderROC(0), eval.areaUnderROC(0));
+    }
+
+    @Test
+    void testCsvIsLoadedWithThePreprocessSchema() throws Exception {
+        File csv = tempDir.resolve("features.csv").toFile();
+        try (FileWriter writer = new FileWriter(csv)) {
+            writer.write("File,NumberLines,TokenEntropy,Truth\n");
+            writer.write("2.jsnp,12.00,2.50,N\n");
+            writer.write("1.jsnp,?,3.25,Y\n");
+            writer.write("\n");
+            writer.write("3.jsnp,7.50,,?\n");
+        }
+        Instances dataset = Classify.loadDataset(csv);
+
+        assertEquals("features", dataset.relationName());
+        assertEquals(3, dataset.size());
+        assertTrue(dataset.attribute(0).isString());
+        assertEquals(Classify.ID_ATTRIBUTE, dataset.attribute(0).name());
+        assertTrue(dataset.attribute(1).isNumeric());
+        assertTrue(dataset.attribute(2).isNumeric());
+        assertEquals(3, dataset.classIndex());
+        assertEquals("Truth", dataset.classAttribute().name());
+        assertEquals(List.of("Y", "N"), Collections.list(dataset.classAttribute().enumerateValues()));
+
+        assertEquals("2.jsnp", dataset.get(0).stringValue(0));
+        assertEquals(12.0, dataset.get(0).value(1));
+        assertEquals("N", dataset.get(0).stringValue(3));
+        assertTrue(dataset.get(1).isMissing(1));
+        assertEquals("Y", dataset.get(1).stringValue(3));
+        assertTrue(dataset.get(2).isMissing(2));
+        assertTrue(dataset.get(2).classIsMissing());
+    }
+
+    @Test
+    void testCsvValuesMatchCsvLoader() throws Exception {
+        Instances dataset = Classify.loadDataset(testCsv);
+        CSVLoader loader = new CSVLoader();
+        loader.setSource(testCsv);
+        Instances expected = loader.getDataSet();
+        for (int row = 0; row < expected.size(); row++) {
+            for (int column = 0; column < expected.numAttributes(); column++) {
+                assertEquals(expected.get(row).toString(column), dataset.get(row).toString(column));
+            }
+        }
+    }
+
+    @Test
+    void testMalformedCsvIsRejected() throws IOException {
+        for (String row : List.of("1.jsnp,1.0,Maybe", "1.jsnp,1.0", "1.jsnp,1.0,Y,Y", "1.jsnp,one,Y")) {
+            File csv = tempDir.resolve("malformed.csv").toFile();
+            try (FileWriter writer = new FileWriter(csv)) {
+                writer.write("File,NumberLines,Truth\n" + row + "\n");
+            }
+            IOException e = assertThrows(IOException.class, () -> Classify.loadDataset(csv), row);
+            assertTrue(e.getMessage().startsWith("Line 2 of"), e.getMessage());
+        }
+    }
+
+    @Test
+    void testSummaryIsOnlyPrintedOnRequest() throws IOException {
+        PrintStream console = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true));
+        try {
+            Classify.loadDataset(testCsv);
+            assertEquals("", output.toString());
+            Classify.loadDataset(testCsv, true);
+            assertTrue(output.toString().contains("Num Instances:  10"));
+        } finally {
+            System.setOut(console);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package readability.utils;
+
+import com.github.javaparser.ParseException;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.NameExpr;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodeMetricsVisitorTest {
+
+    private static void assertSameCountsAsSingleVisitors(String code) throws ParseException {
+        BodyDeclaration<?> parsedCode = Parser.parseJavaSnippet(code);
+
+        CodeMetricsVisitor fused = new CodeMetricsVisitor();
+        fused.visit(parsedCode);
+
+        OperandVisitor operandVisitor = new OperandVisitor();
+        parsedCode.accept(operandVisitor, null);
+        OperatorVisitor operatorVisitor = new OperatorVisitor();
+        parsedCode.accept(operatorVisitor, null);
+        AtomicInteger decisionPoints = new AtomicInteger(0);
+        parsedCode.accept(new CyclomaticComplexityVisitor(), decisionPoints);
+
+        assertEquals(operandVisitor.getOperandsPerMethod(), fused.getOperandsPerMethod());
+        assertEquals(operatorVisitor.getOperatorsPerMethod(), fused.getOperatorsPerMethod());
+        assertEquals(decisionPoints.get(), fused.getDecisionPoints());
+        assertEquals(operatorVisitor.getOperatorsPerMethod().size(), fused.getUniqueOperators());
+        assertEquals(operatorVisitor.getOperatorsPerMethod().values().stream().mapToInt(Integer::intValue).sum(),
+                fused.getTotalOperators());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 15, 42, 100, 200})
+    void testMatchesSingleVisitorsOnSnippets(int snippet) throws IOException, ParseException {
+        assertSameCountsAsSingleVisitors(Files.readString(Paths.get("resources/snippets/" + snippet + ".jsnp")));
+    }
+
+    @Test
+    void testMatchesSingleVisitorsOnAllConstructs() throws ParseException {
+        String code = """
+                void f(Object o) {
+                    int a = 1, b = 2;
+                    long l = 100L;
+                    double d = 1.5;
+                    char c = 'c';
+                    String s = "NULL";
+                    boolean t = o instanceof String && a > b || !true;
+                    a = b > 0 ? -a : a++;
+                    if (o == null) { return; }
+                    for (int i = 0; i < a; i++) { }
+                    for (int j : new int[]{1, 2}) { }
+                    while (a < b) { a++; }
+                    do { b--; } while (b > 0);
+                    try { f(null); } catch (RuntimeException e) { }
+                    switch (a) { case 1: case 2: break; default: break; }
+                }""";
+        assertSameCountsAsSingleVisitors(code);
+    }
+
+    @Test
+    void testDecisionPointsOfAndOrAndTernary() throws ParseException {
+        BodyDeclaration<?> parsedCode = Parser.parseJavaSnippet("void f() { int x = a && b || c ? 1 : 2; }");
+        CodeMetricsVisitor visitor = new CodeMetricsVisitor();
+        visitor.visit(parsedCode);
+        assertEquals(3, visitor.getDecisionPoints());
+    }
+
+    @Test
+    void testDeeplyNestedBinaryChainDoesNotOverflowTheStack() {
+        // Built by hand, as JavaParser's own validation of a parsed tree recurses as well.
+        int terms = 200_000;
+        Expression chain = new NameExpr("a");
+        for (int i = 1; i < terms; i++) {
+            chain = new BinaryExpr(chain, new NameExpr("a"), BinaryExpr.Operator.PLUS);
+        }
+        CodeMetricsVisitor visitor = new CodeMetricsVisitor();
+        visitor.visit(chain);
+        assertEquals(terms - 1, visitor.getOperatorsPerMethod().get(OperatorVisitor.OperatorType.BINARY));
+        assertEquals(terms, visitor.getOperandsPerMethod().get("a"));
+    }
+
+    @Test
+    void testCheckpointRunsDuringTheWalk() {
+        int terms = 10_000;
+        Expression chain = new NameExpr("a");
+        for (int i = 1; i < terms; i++) {
+            chain = new BinaryExpr(chain, new NameExpr("a"), BinaryExpr.Operator.PLUS);
+        }
+        AtomicInteger checks = new AtomicInteger();
+        new CodeMetricsVisitor().visit(chain, checks::incrementAndGet);
+        // Every term is a name expression holding a name, joined by one binary expression less.
+        int nodes = 2 * terms + terms - 1;
+        assertEquals(nodes / SnippetLimits.NODES_PER_CHECK, checks.get());
+
+        CodeMetricsVisitor aborted = new CodeMetricsVisitor();
+        Expression walked = chain;
+        assertThrows(SnippetLimitException.class, () -> aborted.visit(walked, () -> {
+            throw new SnippetLimitException("time limit of 1 ms", false);
+        }));
+        assertTrue(aborted.getOperandCounts().total() < terms);
+    }
+
+    @Test
+    void testResetVisitorCountsTheNextSnippetAlone() throws ParseException {
+        CodeMetricsVisitor visitor = new CodeMetricsVisitor();
+        visitor.visit(Parser.parseJavaSnippet("void f() { if (a) { b = c + d; } }"));
+        visitor.reset();
+        visitor.visit(Parser.parseJavaSnippet("void g() { x++; }"));
+
+        CodeMetricsVisitor fresh = new CodeMetricsVisitor();
+        fresh.visit(Parser.parseJavaSnippet("void g() { x++; }"));
+        assertEquals(fresh.getOperandsPerMethod(), visitor.getOperandsPerMethod());
+        assertEquals(fresh.getOperatorsPerMethod(), visitor.getOperatorsPerMethod());
+        assertEquals(0, visitor.getDecisionPoints());
+        assertEquals(fresh.getOperandCounts().total(), visitor.getOperandCounts().total());
+    }
+}
@@ -0,0 +1,150 @@
+package readability.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeatureCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static byte[] hashOf(String code) {
+        return new SnippetContext(code).getContentHash();
+    }
+
+    @Test
+    void testMissingFileOpensEmptyCache() throws IOException {
+        FeatureCache cache = FeatureCache.open(tempDir.resolve("cache.bin"), 10);
+        assertEquals(0, cache.size());
+        assertEquals(OptionalDouble.empty(), cache.get(hashOf("int a;"), cache.indexOf("Metric@1")));
+    }
+
+    @Test
+    void testValuesSurviveReopening() throws IOException {
+        Path file = tempDir.resolve("cache.bin");
+        try (FeatureCache cache = FeatureCache.open(file, 10)) {
+            cache.put(hashOf("int a;"), cache.indexOf("Metric@1"), 1.5);
+            cache.put(hashOf("int a;"), cache.indexOf("Other@1"), Double.NaN);
+        }
+
+        FeatureCache reopened = FeatureCache.open(file, 10);
+        assertEquals(2, reopened.size());
+        assertEquals(OptionalDouble.of(1.5), reopened.get(hashOf("int a;"), reopened.indexOf("Metric@1")));
+        assertTrue(Double.isNaN(reopened.get(hashOf("int a;"), reopened.indexOf("Other@1")).getAsDouble()));
+        assertTrue(reopened.get(hashOf("int b;"), reopened.indexOf("Metric@1")).isEmpty());
+    }
+
+    @Test
+    void testNewVersionDoesNotSeeOldValues() throws IOException {
+        Path file = tempDir.resolve("cache.bin");
+        try (FeatureCache cache = FeatureCache.open(file, 10)) {
+            cache.put(hashOf("int a;"), cache.indexOf("Metric@1"), 1.5);
+        }
+        FeatureCache reopened = FeatureCache.open(file, 10);
+        assertTrue(reopened.get(hashOf("int a;"), reopened.indexOf("Metric@2")).isEmpty());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+        Path file = tempDir.resolve("cache.bin");
+        try (FeatureCache cache = FeatureCache.open(file, 2)) {
+            cache.put(hashOf("a"), cache.indexOf("Metric@1"), 1);
+            cache.put(hashOf("b"), cache.indexOf("Metric@1"), 2);
+        }
+        try (FeatureCache cache = FeatureCache.open(file, 2)) {
+            // "a" is used again in the second run, "b" is not.
+            assertTrue(cache.get(hashOf("a"), cache.indexOf("Metric@1")).isPresent());
+            cache.put(hashOf("c"), cache.indexOf("Metric@1"), 3);
+            assertEquals(2, cache.size());
+            assertTrue(cache.get(hashOf("b"), cache.indexOf("Metric@1")).isEmpty());
+        }
+
+        FeatureCache reopened = FeatureCache.open(file, 2);
+        int metric = reopened.indexOf("Metric@1");
+        assertEquals(2, reopened.size());
+        assertEquals(OptionalDouble.of(1), reopened.get(hashOf("a"), metric));
+        assertTrue(reopened.get(hashOf("b"), metric).isEmpty());
+        assertEquals(OptionalDouble.of(3), reopened.get(hashOf("c"), metric));
+    }
+
+    @Test
+    void testSizeIsBoundedWhileInserting() throws IOException {
+        try (FeatureCache cache = FeatureCache.open(tempDir.resolve("cache.bin"), 3)) {
+            int metric = cache.indexOf("Metric@1");
+            for (int i = 0; i < 100; i++) {
+                cache.put(hashOf("int a" + i + ";"), metric, i);
+                assertTrue(cache.size() <= 3);
+            }
+            assertEquals(OptionalDouble.of(99), cache.get(hashOf("int a99;"), metric));
+            assertTrue(cache.get(hashOf("int a96;"), metric).isEmpty());
+        }
+    }
+
+    @Test
+    void testFailuresSurviveReopening() throws IOException {
+        Path file = tempDir.resolve("cache.bin");
+        try (FeatureCache cache = FeatureCache.open(file, 10)) {
+            cache.putFailure(hashOf("int a = ;"), cache.indexOf("Metric@1"));
+            cache.put(hashOf("int a;"), cache.indexOf("Metric@1"), 1.5);
+        }
+
+        FeatureCache reopened = FeatureCache.open(file, 10);
+        int metric = reopened.indexOf("Metric@1");
+        assertTrue(reopened.hasFailed(hashOf("int a = ;"), metric));
+        assertTrue(reopened.get(hashOf("int a = ;"), metric).isEmpty());
+        assertFalse(reopened.hasFailed(hashOf("int a;"), metric));
+        assertFalse(reopened.hasFailed(hashOf("int b;"), metric));
+        assertEquals(OptionalDouble.of(1.5), reopened.get(hashOf("int a;"), metric));
+    }
+
+    @Test
+    void testLargeCacheIsBoundedWhileInsertingFromManyThreads() throws Exception {
+        int maxEntries = 100_000;
+        FeatureCache cache = FeatureCache.open(tempDir.resolve("cache.bin"), maxEntries);
+        int metric = cache.indexOf("Metric@1");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> inserts = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int first = thread * 50_000;
+                inserts.add(executor.submit(() -> {
+                    for (int i = first; i < first + 50_000; i++) {
+                        cache.put(hashOf("int a" + i + ";"), metric, i);
+                        cache.get(hashOf("int a" + (i / 2) + ";"), metric);
+                    }
+                }));
+            }
+            for (Future<?> insert : inserts) {
+                insert.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(maxEntries, cache.size());
+        assertEquals(OptionalDouble.of(199_999), cache.get(hashOf("int a199999;"), metric));
+    }
+
+    @Test
+    void testForeignFileIsRejected() throws IOException {
+        Path file = tempDir.resolve("cache.bin");
+        Files.writeString(file, "File,Truth\n");
+        assertThrows(IOException.class, () -> FeatureCache.open(file, 10));
+    }
+
+    @Test
+    void testSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> FeatureCache.open(tempDir.resolve("cache.bin"), 0));
+    }
+}
@@ -0,0 +1,102 @@
+package readability.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeatureMatrixTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FeatureMatrix.Builder sampleMatrix(int rows) {
+        FeatureMatrix.Builder builder = new FeatureMatrix.Builder(List.of("Lines", "Entropy"));
+        for (int row = 0; row < rows; row++) {
+            builder.add(new FeatureRow((row + 1) + ".jsnp", new double[]{row, Math.PI * row}, row % 2 == 0 ? "Y" : "N"));
+        }
+        return builder;
+    }
+
+    @Test
+    void testRoundTripKeepsFullPrecision() throws IOException {
+        Path file = tempDir.resolve("features.bin");
+        // More rows than the initial capacity of the columns.
+        sampleMatrix(100).write(file);
+
+        FeatureMatrix matrix = FeatureMatrix.open(file);
+        assertEquals(100, matrix.numRows());
+        assertEquals(2, matrix.numColumns());
+        assertEquals(List.of("Lines", "Entropy"), matrix.getIdentifiers());
+        for (int row = 0; row < 100; row++) {
+            assertEquals((row + 1) + ".jsnp", matrix.getFileName(row));
+            assertEquals(row % 2 == 0 ? "Y" : "N", matrix.getTruthLabel(row));
+            assertEquals(row, matrix.getValue(row, 0));
+            assertEquals(Math.PI * row, matrix.getValue(row, 1));
+        }
+
+        DoubleBuffer entropy = matrix.getColumn(1);
+        assertEquals(100, entropy.remaining());
+        assertEquals(Math.PI * 99, entropy.get(99));
+    }
+
+    @Test
+    void testColumnsAreAlignedLittleEndianDoubles() throws IOException {
+        Path file = tempDir.resolve("features.bin");
+        sampleMatrix(3).write(file);
+
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        int dataSize = 2 * 3 * Double.BYTES;
+        int dataOffset = bytes.capacity() - dataSize;
+        assertEquals(0, dataOffset % Double.BYTES);
+        assertEquals(3, bytes.getInt(8));
+        assertEquals(2, bytes.getInt(12));
+        // The second column, second row.
+        assertEquals(Math.PI, bytes.getDouble(dataOffset + 4 * Double.BYTES));
+    }
+
+    @Test
+    void testNaNValuesArePreserved() throws IOException {
+        Path file = tempDir.resolve("features.bin");
+        FeatureMatrix.Builder builder = new FeatureMatrix.Builder(List.of("Lines"));
+        builder.add(new FeatureRow("1.jsnp", new double[]{Double.NaN}, "Y"));
+        builder.write(file);
+        assertTrue(Double.isNaN(FeatureMatrix.open(file).getValue(0, 0)));
+    }
+
+    @Test
+    void testEmptyMatrix() throws IOException {
+        Path file = tempDir.resolve("features.bin");
+        sampleMatrix(0).write(file);
+        FeatureMatrix matrix = FeatureMatrix.open(file);
+        assertEquals(0, matrix.numRows());
+        assertEquals(0, matrix.getColumn(0).remaining());
+    }
+
+    @Test
+    void testRowsMustMatchColumns() {
+        FeatureMatrix.Builder builder = new FeatureMatrix.Builder(List.of("Lines"));
+        assertThrows(IllegalArgumentException.class,
+                () -> builder.add(new FeatureRow("1.jsnp", new double[]{1, 2}, "Y")));
+    }
+
+    @Test
+    void testOtherFilesAreRejected() throws IOException {
+        Path csv = Files.writeString(tempDir.resolve("features.bin"), "File,Lines,Truth\n");
+        assertThrows(IOException.class, () -> FeatureMatrix.open(csv));
+
+        Path truncated = tempDir.resolve("truncated.bin");
+        sampleMatrix(3).write(truncated);
+        byte[] content = Files.readAllBytes(truncated);
+        Files.write(truncated, java.util.Arrays.copyOf(content, content.length - 1));
+        assertThrows(IOException.class, () -> FeatureMatrix.open(truncated));
+    }
+}
@@ -0,0 +1,56 @@
+package readability.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FixedPointFormatTest {
+
+    private static String format(double value, int precision) {
+        return FixedPointFormat.append(new StringBuilder(), value, precision).toString();
+    }
+
+    private static void assertSameAsStringFormat(double value, int precision) {
+        assertEquals(String.format(Locale.ROOT, "%." + precision + "f", value), format(value, precision),
+                () -> "value " + value + " with precision " + precision);
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.0, -0.0, -0.001, 0.125, 1.005, 2.675, 0.005, 0.015, 1.115, 16.0, 2.0301,
+            55.35, 470.4567, 123456789.125, 1e14, 1e20, -3.5, Double.NaN,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE})
+    void testSameAsStringFormat(double value) {
+        for (int precision = 0; precision <= 12; precision++) {
+            assertSameAsStringFormat(value, precision);
+        }
+    }
+
+    @Test
+    void testSameAsStringFormatOnRandomValues() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12));
+            assertSameAsStringFormat(value, random.nextInt(FixedPointFormat.MAX_FAST_PRECISION + 1));
+        }
+    }
+
+    @Test
+    void testSameAsStringFormatOnTies() {
+        for (int i = 0; i < 10_000; i++) {
+            assertSameAsStringFormat(i / 1000.0 + 0.0005, 3);
+            assertSameAsStringFormat(i / 100.0 + 0.005, 2);
+        }
+    }
+
+    @Test
+    void testAppendsToExistingContent() {
+        StringBuilder row = new StringBuilder("1.jsnp,");
+        FixedPointFormat.append(row, 4.567, 2);
+        assertEquals("1.jsnp,4.57", row.toString());
+    }
+}
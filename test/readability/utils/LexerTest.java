@@ -0,0 +1,68 @@
+package readability.utils;
+
+import com.github.javaparser.JavaToken;
+import com.github.javaparser.ParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LexerTest {
+
+    private static List<String> parsedTokenTexts(String code) throws ParseException {
+        List<String> texts = new ArrayList<>();
+        for (JavaToken token : Parser.parseJavaSnippet(code).getTokenRange().orElseThrow()) {
+            texts.add(token.getText());
+        }
+        return texts;
+    }
+
+    static Stream<Path> snippets() throws IOException {
+        return Files.list(Paths.get("resources/snippets")).sorted();
+    }
+
+    @ParameterizedTest
+    @MethodSource("snippets")
+    void testSameTokensAsParserOnSnippets(Path snippet) throws IOException, ParseException {
+        String code = Files.readString(snippet);
+        assertEquals(parsedTokenTexts(code), Lexer.tokenize(code));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "int a;",
+            "  /** doc */\n  int f() { return a >> 2 >>> 1; } // trailing\n\n",
+            "Map<String, List<Set<Integer>>> m = new HashMap<>();",
+            "boolean f() { return a > b && c >= d; }",
+            "void f() {\r\n  /* block */ g();\r\n}"
+    })
+    void testSameTokensAsParser(String code) throws ParseException {
+        assertEquals(parsedTokenTexts(code), Lexer.tokenize(code));
+    }
+
+    @Test
+    void testSimpleSnippet() {
+        assertEquals(List.of("int", " ", "a", ";"), Lexer.tokenize("int a;"));
+    }
+
+    @Test
+    void testOnlyWhitespaceAndComments() {
+        assertTrue(Lexer.tokenize("  // nothing here\n").isEmpty());
+    }
+
+    @Test
+    void testSyntaxErrorsAreNotDetected() {
+        assertEquals(List.of("int", " ", "=", " ", ";"), Lexer.tokenize("int = ;"));
+    }
+}
@@ -0,0 +1,76 @@
+package readability.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogisticScorerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final LogisticScorer scorer = new LogisticScorer(List.of("NumberLines", "TokenEntropy"),
+            1.5, new double[]{-0.25, 2.0}, new double[]{10.0, 3.0}, 0.6);
+
+    @Test
+    void testProbabilityIsTheLogisticFunction() {
+        double logit = 1.5 - 0.25 * 8 + 2.0 * 2.5;
+        assertEquals(1 / (1 + Math.exp(-logit)), scorer.probabilityReadable(new double[]{8, 2.5}));
+    }
+
+    @Test
+    void testMissingValuesAreReplacedByMeans() {
+        assertEquals(scorer.probabilityReadable(new double[]{10.0, 2.5}),
+                scorer.probabilityReadable(new double[]{Double.NaN, 2.5}));
+    }
+
+    @Test
+    void testThresholdDecidesReadability() {
+        assertTrue(scorer.isReadable(0.6));
+        assertFalse(scorer.isReadable(0.59));
+    }
+
+    @Test
+    void testRejectsWrongNumberOfValues() {
+        assertThrows(IllegalArgumentException.class, () -> scorer.probabilityReadable(new double[]{1.0}));
+        assertThrows(IllegalArgumentException.class,
+                () -> new LogisticScorer(List.of("NumberLines"), 0, new double[2], new double[1], 0.5));
+    }
+
+    @Test
+    void testSavedCoefficientsScoreTheSame() throws IOException {
+        Path file = tempDir.resolve("model.coef");
+        assertTrue(LogisticScorer.isCoefficientFile(file));
+        scorer.save(file);
+        LogisticScorer loaded = LogisticScorer.load(file);
+
+        assertEquals(scorer.getFeatureIdentifiers(), loaded.getFeatureIdentifiers());
+        assertEquals(scorer.getThreshold(), loaded.getThreshold());
+        for (double lines = 0; lines < 50; lines += 3.5) {
+            double[] values = {lines, lines / 10};
+            assertEquals(scorer.probabilityReadable(values), loaded.probabilityReadable(values));
+        }
+    }
+
+    @Test
+    void testLoadRejectsOtherFiles() throws IOException {
+        Path file = tempDir.resolve("other.coef");
+        Files.writeString(file, "NumberLines,-0.25");
+        assertThrows(IOException.class, () -> LogisticScorer.load(file));
+    }
+
+    @Test
+    void testLoadRejectsTruncatedCoefficients() throws IOException {
+        Path file = tempDir.resolve("model.coef");
+        scorer.save(file);
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, java.util.Arrays.copyOf(content, content.length - 4));
+        assertThrows(IOException.class, () -> LogisticScorer.load(file));
+    }
+}
@@ -0,0 +1,74 @@
+package readability.utils;
+
+import com.github.javaparser.ParseException;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import readability.features.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParseProfileTest {
+
+    @Test
+    void testCheapestForLinesOnlyIsNone() {
+        assertEquals(ParseProfile.NONE, ParseProfile.cheapestFor(List.of(new NumberLinesFeature())));
+    }
+
+    @Test
+    void testCheapestForCyclomaticComplexityIsLean() {
+        assertEquals(ParseProfile.LEAN, ParseProfile.cheapestFor(List.of(new CyclomaticComplexityFeature())));
+    }
+
+    @Test
+    void testCheapestForAllMetricsIsTokens() {
+        List<FeatureMetric> featureMetrics = List.of(new NumberLinesFeature(), new HalsteadVolumeFeature(),
+                new TokenEntropyFeature(), new CyclomaticComplexityFeature());
+        assertEquals(ParseProfile.TOKENS, ParseProfile.cheapestFor(featureMetrics));
+    }
+
+    @Test
+    void testCheapestForNoMetricsIsNone() {
+        assertEquals(ParseProfile.NONE, ParseProfile.cheapestFor(List.of()));
+    }
+
+    @Test
+    void testNoneDoesNotPermitParsing() {
+        SnippetContext context = new SnippetContext("int a;", ParseProfile.NONE);
+        assertThrows(IllegalStateException.class, context::getParsedCode);
+    }
+
+    @Test
+    void testLeanDoesNotStoreTokens() throws ParseException {
+        BodyDeclaration<?> parsedCode = Parser.parseJavaSnippet("int a;", ParseProfile.LEAN);
+        assertTrue(parsedCode.getTokenRange().isEmpty());
+    }
+
+    @Test
+    void testTokensStoresTokensButDoesNotAttributeComments() throws ParseException {
+        BodyDeclaration<?> parsedCode = Parser.parseJavaSnippet("/** doc */ int a;", ParseProfile.TOKENS);
+        assertTrue(parsedCode.getTokenRange().isPresent());
+        assertTrue(parsedCode.getComment().isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 15, 42, 100, 200})
+    void testLeanProfilesComputeSameMetricsAsFull(int snippet) throws IOException {
+        String code = Files.readString(Paths.get("resources/snippets/" + snippet + ".jsnp"));
+        List<FeatureMetric> featureMetrics = List.of(new NumberLinesFeature(), new HalsteadVolumeFeature(),
+                new TokenEntropyFeature(), new CyclomaticComplexityFeature());
+        for (FeatureMetric featureMetric : featureMetrics) {
+            SnippetContext lean = new SnippetContext(code, featureMetric.getParseProfile());
+            SnippetContext full = new SnippetContext(code, ParseProfile.FULL);
+            assertEquals(assertDoesNotThrow(() -> featureMetric.computeMetricFrom(full)),
+                    assertDoesNotThrow(() -> featureMetric.computeMetricFrom(lean)),
+                    featureMetric.getIdentifier());
+        }
+    }
+}
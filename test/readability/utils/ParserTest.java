@@ -4,6 +4,13 @@
 import com.github.javaparser.ast.body.BodyDeclaration;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ParserTest {
@@ -35,4 +42,82 @@ void testParseJavaSnippet_WithEmptyCode() {
             Parser.parseJavaSnippet(emptySnippet);
         }, "A ParseException should be thrown for an empty code snippet.");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testParseJavaSnippet_ReusedParserRecoversAfterInvalidCode() throws ParseException {
+        assertThrows(ParseException.class, () -> Parser.parseJavaSnippet("void m() { int x = ; }"));
+        BodyDeclaration<?> result = Parser.parseJavaSnippet("void m() { int x = 1; }");
+        assertTrue(result.isMethodDeclaration());
+    }
+
+    @Test
+    void testParseJavaSnippet_FromMultipleThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String snippet = "int m" + i + "() { return " + i + "; }";
+                results.add(executor.submit(() -> Parser.parseJavaSnippet(snippet).asMethodDeclaration().getNameAsString()));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("m" + i, results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testParseJavaSnippet_RunsCheckpointWhileReading() throws ParseException {
+        String longSnippet = "void m() {" + " int x = 1;".repeat(2000) + " }";
+        AtomicInteger checks = new AtomicInteger();
+        Parser.parseJavaSnippet(longSnippet, ParseProfile.LEAN, checks::incrementAndGet);
+        assertTrue(checks.get() > longSnippet.length() / 1024, "checked " + checks.get() + " times");
+    }
+
+    @Test
+    void testParseJavaSnippet_CheckpointAbortsTheParse() throws ParseException {
+        String longSnippet = "void m() {" + " int x = 1;".repeat(2000) + " }";
+        AtomicInteger checks = new AtomicInteger();
+        SnippetLimitException e = assertThrows(SnippetLimitException.class, () ->
+                Parser.parseJavaSnippet(longSnippet, ParseProfile.LEAN, () -> {
+                    if (checks.incrementAndGet() == 3) {
+                        throw new SnippetLimitException("time limit of 1 ms", false);
+                    }
+                }));
+        assertEquals("time limit of 1 ms", e.getMessage());
+        assertEquals(3, checks.get());
+        assertNotNull(Parser.parseJavaSnippet("void m() { int x = 1; }", ParseProfile.LEAN));
+    }
+
+    @Test
+    void testParseJavaSnippet_DeepParserIsReusedAndChecked() throws Exception {
+        int depth = 5000;
+        String deepSnippet = "void m() { int x = " + "(".repeat(depth) + "1" + ")".repeat(depth) + "; }";
+        List<Thread> checkingThreads = new ArrayList<>();
+        List<Object> outcomes = new ArrayList<>();
+        Runnable parseTwiceAndAbort = () -> {
+            try {
+                for (int i = 0; i < 2; i++) {
+                    Parser.parseJavaSnippet(deepSnippet, ParseProfile.LEAN, () -> checkingThreads.add(Thread.currentThread()));
+                }
+                outcomes.add(assertThrows(SnippetLimitException.class, () ->
+                        Parser.parseJavaSnippet(deepSnippet, ParseProfile.LEAN, () -> {
+                            throw new SnippetLimitException("time limit of 1 ms", false);
+                        })));
+            } catch (Throwable e) {
+                outcomes.add(e);
+            }
+        };
+        // A small stack makes the worker overflow, so the snippets go to its deep parser.
+        Thread worker = new Thread(null, parseTwiceAndAbort, "small-stack", 256 << 10);
+        worker.start();
+        worker.join();
+
+        assertInstanceOf(SnippetLimitException.class, outcomes.get(0));
+        Thread deepParser = checkingThreads.get(checkingThreads.size() - 1);
+        assertEquals("deep-parser", deepParser.getName());
+        assertTrue(checkingThreads.stream().allMatch(thread -> thread == worker || thread == deepParser),
+                "one deep parser thread is reused for the snippets of a worker");
+    }
+}
@@ -1,6 +1,6 @@
 package readability.utils;
 
-import readability.features.FeatureMetric;
+import readability.features.*;
 import org.junit.jupiter.api.*;
 
 import java.io.*;
@@ -248,6 +248,258 @@ void testInvalidTruthScoreIsSkipped() throws IOException {
         assertFalse(result.contains("2.jsnp"));
     }
 
+    @Test
+    void testParallelRunMatchesSequentialRun() throws IOException {
+        Path snippets = Paths.get("resources/snippets");
+        File truth = new File("resources/truth_scores.csv");
+        List<FeatureMetric> allMetrics = List.of(new NumberLinesFeature(), new TokenEntropyFeature(),
+                new HalsteadVolumeFeature(), new CyclomaticComplexityFeature());
+
+        StringBuilder sequential = new StringBuilder();
+        Preprocess.collectCSVBody(snippets, truth, sequential, allMetrics);
+        StringBuilder parallel = new StringBuilder();
+        Preprocess.collectCSVBody(snippets, truth, parallel, allMetrics, PreprocessOptions.defaults().withThreads(4));
+
+        assertEquals(200, sequential.toString().lines().count());
+        assertEquals(sequential.toString(), parallel.toString());
+    }
+
+    @Test
+    void testParallelRunSkipsFailingFilesInOrder() throws IOException {
+        Files.writeString(tempDir.resolve("3.jsnp"), "code snippet 3");
+        Preprocess.collectCSVBody(tempDir, truthFile, csvOutput, features, PreprocessOptions.defaults().withThreads(3));
+        List<String> rows = csvOutput.toString().lines().toList();
+        assertEquals(List.of("1.jsnp,1.23,4.56,Y", "2.jsnp,1.23,4.56,N", "3.jsnp,1.23,4.56,N", "10.jsnp,1.23,4.56,Y"), rows);
+    }
+
+    @Test
+    void testOptionsRejectLessThanOneThread() {
+        assertThrows(IllegalArgumentException.class, () -> PreprocessOptions.defaults().withThreads(0));
+    }
+
+    @Test
+    void testRowsAreStreamedIntoWriter() throws IOException {
+        StringWriter writer = new StringWriter();
+        Preprocess.collectCSVBody(tempDir, truthFile, writer, features, PreprocessOptions.defaults().withThreads(2));
+        Preprocess.collectCSVBody(tempDir, truthFile, csvOutput, features);
+        assertEquals(csvOutput.toString(), writer.toString());
+    }
+
+    @Test
+    void testPrecisionIsConfigurable() throws IOException {
+        Preprocess.collectCSVBody(tempDir, truthFile, csvOutput, features, PreprocessOptions.defaults().withPrecision(3));
+        assertTrue(csvOutput.toString().contains("1.jsnp,1.230,4.560,Y"));
+    }
+
+    private String collectFromArchive(Path archive, int threads) throws IOException {
+        StringBuilder csv = new StringBuilder();
+        List<FeatureMetric> metrics = List.of(new NumberLinesFeature(), new CyclomaticComplexityFeature());
+        Preprocess.collectCSVBody(archive, new File("resources/truth_scores.csv"), csv, metrics,
+                PreprocessOptions.defaults().withThreads(threads));
+        return csv.toString();
+    }
+
+    private String collectFromSnippetDirectory() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        List<FeatureMetric> metrics = List.of(new NumberLinesFeature(), new CyclomaticComplexityFeature());
+        Preprocess.collectCSVBody(Paths.get("resources/snippets"), new File("resources/truth_scores.csv"), csv, metrics);
+        return csv.toString();
+    }
+
+    @Test
+    void testZipArchiveMatchesDirectory() throws IOException {
+        Path archive = tempDir.resolve("snippets.zip");
+        try (java.util.zip.ZipOutputStream zip = new java.util.zip.ZipOutputStream(Files.newOutputStream(archive));
+             DirectoryStream<Path> snippets = Files.newDirectoryStream(Paths.get("resources/snippets"))) {
+            for (Path snippet : snippets) {
+                zip.putNextEntry(new java.util.zip.ZipEntry("snippets/" + snippet.getFileName()));
+                zip.write(Files.readAllBytes(snippet));
+                zip.closeEntry();
+            }
+        }
+        String expected = collectFromSnippetDirectory();
+        assertEquals(expected, collectFromArchive(archive, 1));
+        assertEquals(expected, collectFromArchive(archive, 4));
+    }
+
+    @Test
+    void testTarArchivesMatchDirectory() throws IOException {
+        TarReaderTest.TarWriter tar = new TarReaderTest.TarWriter();
+        // Archive order differs from the numeric order of the rows.
+        try (DirectoryStream<Path> snippets = Files.newDirectoryStream(Paths.get("resources/snippets"))) {
+            for (Path snippet : snippets) {
+                tar.add("snippets/" + snippet.getFileName(), Files.readString(snippet));
+            }
+        }
+        Path archive = Files.write(tempDir.resolve("snippets.tar"), tar.toByteArray());
+        Path compressedArchive = Files.write(tempDir.resolve("snippets.tgz"), tar.toGzipByteArray());
+
+        String expected = collectFromSnippetDirectory();
+        assertEquals(expected, collectFromArchive(archive, 1));
+        assertEquals(expected, collectFromArchive(archive, 4));
+        assertEquals(expected, collectFromArchive(compressedArchive, 4));
+    }
+
+    @Test
+    void testTarEntriesAreLookedUpByFileName() throws IOException {
+        byte[] archive = new TarReaderTest.TarWriter()
+                .add("b/10.jsnp", "code snippet 10")
+                .add("a/2.jsnp", "code snippet 2")
+                .add("a/x.jsnp", "not numbered")
+                .toByteArray();
+        Path tar = Files.write(tempDir.resolve("snippets.tar"), archive);
+        Preprocess.collectCSVBody(tar, truthFile, csvOutput, features);
+        assertEquals("2.jsnp,1.23,4.56,N" + System.lineSeparator() + "10.jsnp,1.23,4.56,Y" + System.lineSeparator(),
+                csvOutput.toString());
+    }
+
+    @Test
+    void testTarEntriesWithTheSameNameAreRejected() throws IOException {
+        byte[] archive = new TarReaderTest.TarWriter()
+                .add("a/2.jsnp", "code snippet 2")
+                .add("b/2.jsnp", "another snippet 2")
+                .toByteArray();
+        Path tar = Files.write(tempDir.resolve("snippets.tar"), archive);
+        assertThrows(IOException.class, () -> Preprocess.collectCSVBody(tar, truthFile, csvOutput, features));
+    }
+
+    @Test
+    void testIncrementalRunRejectsArchives() throws IOException {
+        Path archive = Files.write(tempDir.resolve("snippets.tar"), new TarReaderTest.TarWriter().toByteArray());
+        SnippetManifest manifest = SnippetManifest.open(tempDir.resolve("m"), archive, "", tempDir.resolve("out.csv"));
+        assertThrows(IllegalArgumentException.class, () -> Preprocess.collectCSVBody(archive, truthFile, csvOutput,
+                features, PreprocessOptions.defaults(), manifest));
+    }
+
+    @Test
+    void testPackMatchesDirectory() throws IOException {
+        Path pack = tempDir.resolve("snippets.pack");
+        SnippetPack.write(Paths.get("resources/snippets"), pack, 1);
+        String expected = collectFromSnippetDirectory();
+        assertEquals(expected, collectFromArchive(pack, 1));
+        assertEquals(expected, collectFromArchive(pack, 4));
+    }
+
+    @Test
+    void testTruthWithoutMeanRowUsesRatings() throws IOException {
+        try (PrintWriter pw = new PrintWriter(truthFile)) {
+            pw.println("Rater,1,2,3,4,5,6,7,8,9,10");
+            pw.println("Evaluator1,5,4,3,3,3,3,3,3,3,2");
+            pw.println("Evaluator2,3,4,3,3,3,3,3,3,3,2");
+        }
+        Preprocess.collectCSVBody(tempDir, truthFile, csvOutput, features);
+        String result = csvOutput.toString();
+        assertTrue(result.contains("1.jsnp,1.23,4.56,Y"));
+        assertTrue(result.contains("2.jsnp,1.23,4.56,Y"));
+        assertTrue(result.contains("10.jsnp,1.23,4.56,N"));
+    }
+
+    @Test
+    void testMedianTruthAggregate() throws IOException {
+        try (PrintWriter pw = new PrintWriter(truthFile)) {
+            pw.println("Rater,1,2");
+            pw.println("Evaluator1,5,1");
+            pw.println("Evaluator2,4,1");
+            pw.println("Evaluator3,1,5");
+            pw.println("Mean,3.33,2.33");
+        }
+        Preprocess.collectCSVBody(tempDir, truthFile, csvOutput, features,
+                PreprocessOptions.defaults().withTruthAggregate(TruthScores.Aggregate.MEDIAN));
+        String result = csvOutput.toString();
+        assertTrue(result.contains("1.jsnp,1.23,4.56,Y"));
+        assertTrue(result.contains("2.jsnp,1.23,4.56,N"));
+    }
+
+    @Test
+    void testFeatureMatrixHoldsTheRowsOfTheCsv() throws IOException {
+        List<FeatureMetric> metrics = List.of(new NumberLinesFeature(), new TokenEntropyFeature());
+        FeatureMatrix.Builder builder = new FeatureMatrix.Builder(List.of("Lines", "Entropy"));
+        Preprocess.collectFeatureMatrix(Paths.get("resources/snippets"), new File("resources/truth_scores.csv"),
+                builder, metrics, PreprocessOptions.defaults().withThreads(4));
+        Path file = tempDir.resolve("features.bin");
+        builder.write(file);
+        FeatureMatrix matrix = FeatureMatrix.open(file);
+
+        StringBuilder csv = new StringBuilder();
+        Preprocess.collectCSVBody(Paths.get("resources/snippets"), new File("resources/truth_scores.csv"), csv, metrics,
+                PreprocessOptions.defaults().withPrecision(6));
+        List<String> rows = csv.toString().lines().toList();
+        assertEquals(rows.size(), matrix.numRows());
+        for (int row = 0; row < rows.size(); row++) {
+            double[] values = new double[matrix.numColumns()];
+            for (int column = 0; column < values.length; column++) {
+                values[column] = matrix.getValue(row, column);
+            }
+            FeatureRow featureRow = new FeatureRow(matrix.getFileName(row), values, matrix.getTruthLabel(row));
+            assertEquals(rows.get(row), featureRow.toCsv(6));
+        }
+    }
 
+    @Test
+    void testFeaturesAreComputedOnPlatformThreads() throws IOException {
+        Set<Boolean> virtualThreads = java.util.concurrent.ConcurrentHashMap.newKeySet();
+        FeatureMetric recordingFeature = new DummyFeature(1.0) {
+            @Override
+            public double computeMetric(String codeSnippet) {
+                virtualThreads.add(Thread.currentThread().isVirtual());
+                return super.computeMetric(codeSnippet);
+            }
+        };
+        Preprocess.collectCSVBody(tempDir, truthFile, csvOutput, List.of(recordingFeature),
+                PreprocessOptions.defaults().withThreads(2));
+        // Virtual threads only read the snippets, so a blocking read never takes a worker away from parsing.
+        assertEquals(Set.of(false), virtualThreads);
+        assertEquals(List.of("1.jsnp,1.00,Y", "2.jsnp,1.00,N", "10.jsnp,1.00,Y"), csvOutput.toString().lines().toList());
+    }
 
+    @Test
+    void testSnippetsOverALimitGetSkippedRows() throws IOException {
+        Files.writeString(tempDir.resolve("1.jsnp"), "void m() { int x = 1; }");
+        Files.writeString(tempDir.resolve("2.jsnp"), "void m() { int x = " + "1 + ".repeat(200) + "1; }");
+        Files.writeString(tempDir.resolve("10.jsnp"), "void m() { int x = 10; }");
+        List<FeatureMetric> metrics = List.of(new NumberLinesFeature(), new CyclomaticComplexityFeature());
+        PreprocessOptions options = PreprocessOptions.defaults().withLimits(SnippetLimits.none().withMaxNodes(100));
+
+        Preprocess.collectCSVBody(tempDir, truthFile, csvOutput, metrics, options.withThreads(2));
+        List<String> rows = csvOutput.toString().lines().toList();
+        assertEquals(List.of("1.jsnp,1.00,1.00,Y", "2.jsnp,?,?,N", "10.jsnp,1.00,1.00,Y"), rows);
+
+        FeatureMatrix.Builder matrix = new FeatureMatrix.Builder(List.of("Lines", "Cyclomatic"));
+        Preprocess.collectFeatureMatrix(tempDir, truthFile, matrix, metrics, options);
+        Path file = tempDir.resolve("features.bin");
+        matrix.write(file);
+        assertTrue(Double.isNaN(FeatureMatrix.open(file).getValue(1, 0)));
+    }
+
+    @Test
+    void testDeeplyNestedSnippetGetsSkippedRow() throws IOException {
+        Files.writeString(tempDir.resolve("1.jsnp"), "void m() { int x = 1; }");
+        Files.writeString(tempDir.resolve("10.jsnp"), "void m() { int x = 10; }");
+        int depth = 1_000_000;
+        Files.writeString(tempDir.resolve("2.jsnp"), "void m() { int x = " + "(".repeat(depth) + "1" + ")".repeat(depth) + "; }");
+        List<FeatureMetric> metrics = List.of(new NumberLinesFeature(), new CyclomaticComplexityFeature());
+        PreprocessOptions options = PreprocessOptions.defaults();
+
+        for (int threads : new int[]{1, 2}) {
+            csvOutput.setLength(0);
+            Preprocess.collectCSVBody(tempDir, truthFile, csvOutput, metrics, options.withThreads(threads));
+            assertEquals(List.of("1.jsnp,1.00,1.00,Y", "2.jsnp,?,?,N", "10.jsnp,1.00,1.00,Y"),
+                    csvOutput.toString().lines().toList());
+        }
+    }
+
+    @Test
+    void testFeatureRowsWithoutTruthAreUnlabelled() throws IOException {
+        Files.writeString(tempDir.resolve("NewSnippet.jsnp"), "code snippet");
+        List<FeatureRow> rows = new ArrayList<>();
+        Preprocess.collectFeatureRows(tempDir, null, rows::add, features,
+                PreprocessOptions.defaults().withThreads(2));
+
+        assertEquals(List.of("1.jsnp", "2.jsnp", "10.jsnp", "NewSnippet.jsnp"),
+                rows.stream().map(FeatureRow::fileName).toList());
+        for (FeatureRow row : rows) {
+            assertEquals(Preprocess.UNKNOWN_LABEL, row.truthLabel());
+            assertArrayEquals(new double[]{1.23, 4.56}, row.values());
+        }
+    }
 }
@@ -0,0 +1,175 @@
+package readability.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import weka.core.Instances;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.SwapValues;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadabilityModelTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Instances dataset;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        File csv = tempDir.resolve("features.csv").toFile();
+        Random random = new Random(3);
+        try (FileWriter writer = new FileWriter(csv)) {
+            writer.write("File,NumberLines,TokenEntropy,Truth\n");
+            for (int i = 1; i <= 40; i++) {
+                double lines = 5 + 30 * random.nextDouble();
+                String truth = lines + 10 * random.nextGaussian() < 20 ? "Y" : "N";
+                writer.write(i + ".jsnp," + lines + "," + (2 + random.nextDouble()) + "," + truth + "\n");
+            }
+        }
+        dataset = Classify.loadDataset(csv);
+    }
+
+    @Test
+    void testIdentifierIsNotAFeature() throws Exception {
+        ReadabilityModel model = ReadabilityModel.train(dataset, 0.5);
+        assertEquals(List.of("NumberLines", "TokenEntropy"), model.getFeatureIdentifiers());
+    }
+
+    @Test
+    void testProbabilityMatchesTheClassifier() throws Exception {
+        ReadabilityModel model = ReadabilityModel.train(dataset, 0.5);
+        Instances features = new Instances(dataset);
+        features.deleteAttributeAt(0);
+        for (int row = 0; row < features.size(); row++) {
+            double[] values = {features.get(row).value(0), features.get(row).value(1)};
+            double[] distribution = model.getClassifier().distributionForInstance(features.get(row));
+            int readable = features.classAttribute().indexOfValue(ReadabilityModel.READABLE_LABEL);
+            assertEquals(distribution[readable], model.probabilityReadable(values));
+        }
+    }
+
+    @Test
+    void testSavedModelPredictsTheSame() throws Exception {
+        ReadabilityModel model = ReadabilityModel.train(dataset, 0.7);
+        Path file = tempDir.resolve("readability.model");
+        model.save(file);
+        ReadabilityModel loaded = ReadabilityModel.load(file);
+
+        assertEquals(model.getFeatureIdentifiers(), loaded.getFeatureIdentifiers());
+        assertEquals(0.7, loaded.getThreshold());
+        for (double lines = 5; lines <= 35; lines += 2.5) {
+            double[] values = {lines, 2.5};
+            assertEquals(model.probabilityReadable(values), loaded.probabilityReadable(values));
+        }
+    }
+
+    @Test
+    void testThresholdDecidesReadability() throws Exception {
+        ReadabilityModel model = ReadabilityModel.train(dataset, 0.7);
+        assertTrue(model.isReadable(0.7));
+        assertFalse(model.isReadable(0.69));
+    }
+
+    @Test
+    void testMissingValuesAreClassified() throws Exception {
+        ReadabilityModel model = ReadabilityModel.train(dataset, 0.5);
+        double probability = model.probabilityReadable(new double[]{Double.NaN, 2.5});
+        assertTrue(probability >= 0 && probability <= 1);
+    }
+
+    @Test
+    void testRejectsWrongNumberOfValues() throws Exception {
+        ReadabilityModel model = ReadabilityModel.train(dataset, 0.5);
+        assertThrows(IllegalArgumentException.class, () -> model.probabilityReadable(new double[]{1.0}));
+    }
+
+    @Test
+    void testRejectsThresholdOutsideOfProbabilities() {
+        assertThrows(IllegalArgumentException.class, () -> ReadabilityModel.train(dataset, 0));
+        assertThrows(IllegalArgumentException.class, () -> ReadabilityModel.train(dataset, 1));
+    }
+
+    @Test
+    void testLoadRejectsOtherFiles() throws IOException {
+        Path notAModel = tempDir.resolve("other.model");
+        Files.writeString(notAModel, "File,NumberLines,Truth\n");
+        assertThrows(IOException.class, () -> ReadabilityModel.load(notAModel));
+    }
+
+    @Test
+    void testLoadRejectsTruncatedModel() throws Exception {
+        Path file = tempDir.resolve("readability.model");
+        ReadabilityModel.train(dataset, 0.5).save(file);
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, java.util.Arrays.copyOf(content, content.length / 2));
+        assertThrows(IOException.class, () -> ReadabilityModel.load(file));
+    }
+
+    @Test
+    void testScorerReproducesWekaProbabilities() throws Exception {
+        assertScorerMatchesClassifier(ReadabilityModel.train(dataset, 0.5));
+    }
+
+    @Test
+    void testScorerHandlesReadableSecondClassAndUselessFeatures() throws Exception {
+        File csv = tempDir.resolve("constant.csv").toFile();
+        Random random = new Random(5);
+        try (FileWriter writer = new FileWriter(csv)) {
+            writer.write("File,Constant,NumberLines,TokenEntropy,Truth\n");
+            writer.write("0.jsnp,1.5,40,?,N\n");
+            for (int i = 1; i <= 40; i++) {
+                double lines = 5 + 30 * random.nextDouble();
+                String truth = lines + 10 * random.nextGaussian() < 20 ? "Y" : "N";
+                String entropy = i % 7 == 0 ? "?" : String.valueOf(2 + random.nextDouble());
+                writer.write(i + ".jsnp,1.5," + lines + "," + entropy + "," + truth + "\n");
+            }
+        }
+        SwapValues readableSecond = new SwapValues();
+        readableSecond.setAttributeIndex("last");
+        Instances loaded = Classify.loadDataset(csv);
+        readableSecond.setInputFormat(loaded);
+        Instances withConstant = Filter.useFilter(loaded, readableSecond);
+        assertEquals(1, withConstant.classAttribute().indexOfValue(ReadabilityModel.READABLE_LABEL));
+
+        ReadabilityModel model = ReadabilityModel.train(withConstant, 0.5);
+        assertEquals(0.0, model.getScorer().getWeight(0), "The constant feature is removed by Logistic.");
+        assertEquals(1.5, model.getScorer().getMean(0));
+        assertScorerMatchesClassifier(model);
+    }
+
+    @Test
+    void testSavedModelKeepsTheScorer() throws Exception {
+        ReadabilityModel model = ReadabilityModel.train(dataset, 0.6);
+        Path file = tempDir.resolve("readability.model");
+        model.save(file);
+        LogisticScorer scorer = ReadabilityModel.load(file).getScorer();
+
+        assertEquals(model.getScorer().getIntercept(), scorer.getIntercept());
+        assertEquals(0.6, scorer.getThreshold());
+        double[] values = {12.5, 2.25};
+        assertEquals(model.getScorer().probabilityReadable(values), scorer.probabilityReadable(values));
+    }
+
+    private static void assertScorerMatchesClassifier(ReadabilityModel model) {
+        LogisticScorer scorer = model.getScorer();
+        Random random = new Random(11);
+        int features = model.getFeatureIdentifiers().size();
+        for (int i = 0; i < 1000; i++) {
+            double[] values = new double[features];
+            for (int feature = 0; feature < features; feature++) {
+                values[feature] = random.nextInt(10) == 0 ? Double.NaN : 50 * random.nextDouble();
+            }
+            assertEquals(model.probabilityReadable(values), scorer.probabilityReadable(values), 1e-12);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package readability.utils;
+
+import com.github.javaparser.ParseException;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.expr.EnclosedExpr;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnippetContextTest {
+
+    @Test
+    void testParsedCodeIsOnlyParsedOnce() throws ParseException {
+        SnippetContext context = new SnippetContext("void m() { int x = 1; }");
+        BodyDeclaration<?> first = context.getParsedCode();
+        assertSame(first, context.getParsedCode());
+    }
+
+    @Test
+    void testParseFailureIsRememberedAndRethrown() {
+        SnippetContext context = new SnippetContext("void m() { int x = ; }");
+        ParseException first = assertThrows(ParseException.class, context::getParsedCode);
+        ParseException second = assertThrows(ParseException.class, context::getParsedCode);
+        assertSame(first, second);
+    }
+
+    @Test
+    void testTokenRangeIsTakenFromParsedCode() throws ParseException {
+        SnippetContext context = new SnippetContext("int a;");
+        assertTrue(context.getTokenRange().isPresent());
+        assertEquals("int", context.getTokenRange().get().getBegin().getText());
+    }
+
+    @Test
+    void testIsBlank() {
+        assertTrue(new SnippetContext(null).isBlank());
+        assertTrue(new SnippetContext(" \t\n").isBlank());
+        assertFalse(new SnippetContext("int a;").isBlank());
+    }
+
+    @Test
+    void testLineOffsets() {
+        assertArrayEquals(new int[]{0}, new SnippetContext("int a;").getLineOffsets());
+        assertArrayEquals(new int[]{0, 3, 7}, new SnippetContext("ab\ncd\r\nef").getLineOffsets());
+        assertArrayEquals(new int[]{0, 3}, new SnippetContext("ab\n").getLineOffsets());
+    }
+
+    @Test
+    void testLineOffsetsForNullSnippet() {
+        assertArrayEquals(new int[]{0}, new SnippetContext(null).getLineOffsets());
+    }
+
+    @Test
+    void testNodeLimitIsCheckedAfterParsing() throws ParseException {
+        String code = "void m() { int x = 1 + 2 + 3 + 4; }";
+        SnippetContext unlimited = new SnippetContext(code, ParseProfile.LEAN);
+        long nodes = unlimited.getParsedCode().stream().count();
+
+        SnippetLimits atLimit = SnippetLimits.none().withMaxNodes((int) nodes);
+        assertNotNull(new SnippetContext(code, ParseProfile.LEAN, atLimit).getParsedCode());
+
+        SnippetLimits belowLimit = SnippetLimits.none().withMaxNodes((int) nodes - 1);
+        SnippetContext limited = new SnippetContext(code, ParseProfile.LEAN, belowLimit);
+        SnippetLimitException e = assertThrows(SnippetLimitException.class, limited::getParsedCode);
+        assertTrue(e.getMessage().contains("node limit"));
+    }
+
+    @Test
+    void testSizeLimitIsCheckedBeforeParsing() {
+        SnippetContext context = new SnippetContext("int a;", ParseProfile.LEAN, SnippetLimits.none().withMaxCharacters(5));
+        assertThrows(SnippetLimitException.class, context::checkLimits);
+        assertThrows(SnippetLimitException.class, context::getParsedCode);
+    }
+
+    @Test
+    void testTimeLimitIsChecked() throws InterruptedException {
+        SnippetContext context = new SnippetContext("int a;", ParseProfile.LEAN, SnippetLimits.none().withMaxMillis(1));
+        Thread.sleep(10);
+        SnippetLimitException e = assertThrows(SnippetLimitException.class, context::checkLimits);
+        assertTrue(e.getMessage().contains("time limit"));
+    }
+
+    @Test
+    void testNoLimitsByDefault() {
+        assertDoesNotThrow(new SnippetContext("int a;".repeat(1000))::checkLimits);
+        assertThrows(IllegalArgumentException.class, () -> SnippetLimits.none().withMaxNodes(0));
+    }
+
+    @Test
+    void testDeeplyNestedParenthesesAreParsed() throws ParseException {
+        int depth = 5000;
+        String code = "void m() { int x = " + "(".repeat(depth) + "1" + ")".repeat(depth) + "; }";
+        SnippetContext context = new SnippetContext(code, ParseProfile.LEAN);
+        assertEquals(depth, context.getParsedCode().findAll(EnclosedExpr.class).size());
+    }
+
+    @Test
+    void testLongBinaryChainIsParsed() throws ParseException {
+        int terms = 20_000;
+        String code = "void m() { int x = a" + " + a".repeat(terms - 1) + "; }";
+        CodeMetricsVisitor metrics = new SnippetContext(code, ParseProfile.LEAN).getCodeMetrics();
+        assertEquals(terms - 1, metrics.getOperatorsPerMethod().get(OperatorVisitor.OperatorType.BINARY));
+        assertEquals(terms, metrics.getOperandsPerMethod().get("a"));
+    }
+
+    @Test
+    void testSnippetTooDeepForEveryStackIsSkipped() {
+        int depth = 1_000_000;
+        String code = "void m() { int x = " + "(".repeat(depth) + "1" + ")".repeat(depth) + "; }";
+        SnippetLimitException e = assertThrows(SnippetLimitException.class,
+                new SnippetContext(code, ParseProfile.LEAN)::getParsedCode);
+        assertFalse(e.isReproducible());
+    }
+
+    @Test
+    void testCodeMetricsVisitorIsReusedByTheThread() throws ParseException {
+        SnippetContext first = new SnippetContext("void f() { if (a) { b = c + d; } }");
+        SnippetContext second = new SnippetContext("void g() { x++; }");
+        CodeMetricsVisitor visitor = first.getCodeMetrics();
+        assertEquals(1, visitor.getDecisionPoints());
+        assertSame(visitor, second.getCodeMetrics());
+        assertEquals(0, visitor.getDecisionPoints());
+        assertCountsOf(second, visitor);
+
+        assertSame(visitor, first.getCodeMetrics());
+        assertCountsOf(first, visitor);
+    }
+
+    private static void assertCountsOf(SnippetContext context, CodeMetricsVisitor visitor) throws ParseException {
+        CodeMetricsVisitor fresh = new CodeMetricsVisitor();
+        fresh.visit(context.getParsedCode());
+        assertEquals(fresh.getOperandsPerMethod(), visitor.getOperandsPerMethod());
+        assertEquals(fresh.getOperatorsPerMethod(), visitor.getOperatorsPerMethod());
+        assertEquals(fresh.getDecisionPoints(), visitor.getDecisionPoints());
+    }
+}
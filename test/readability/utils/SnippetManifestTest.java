@@ -0,0 +1,275 @@
+package readability.utils;
+
+import readability.features.FeatureMetric;
+import readability.features.TokenEntropyFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnippetManifestTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path sourceDir;
+    private File truthFile;
+    private Path csvFile;
+    private Path manifestFile;
+    private LengthFeature feature;
+
+    /**
+     * Computes the snippet length and counts how often it is computed. Fails on snippets starting with '!'.
+     */
+    static class LengthFeature extends FeatureMetric {
+        final AtomicInteger computations = new AtomicInteger();
+
+        @Override
+        public double computeMetric(String codeSnippet) {
+            computations.incrementAndGet();
+            if (codeSnippet.startsWith("!")) {
+                throw new IllegalArgumentException("Failed to compute the length");
+            }
+            return codeSnippet.length();
+        }
+
+        @Override
+        public String getIdentifier() {
+            return "Length";
+        }
+    }
+
+    @BeforeEach
+    void setup() throws IOException {
+        sourceDir = Files.createDirectory(tempDir.resolve("snippets"));
+        Files.writeString(sourceDir.resolve("1.jsnp"), "a");
+        Files.writeString(sourceDir.resolve("2.jsnp"), "bb");
+        Files.writeString(sourceDir.resolve("10.jsnp"), "cccc");
+
+        truthFile = tempDir.resolve("truth.csv").toFile();
+        Files.writeString(truthFile.toPath(), "Header,1,2,3,4,5,6,7,8,9,10\nMean,4.0,3.5,2.0,3.0,4.1,3.7,3.9,4.2,3.8,5.0\n");
+
+        csvFile = tempDir.resolve("out.csv");
+        manifestFile = tempDir.resolve("out.csv.manifest");
+        feature = new LengthFeature();
+    }
+
+    private String runIncremental(PreprocessOptions options) throws IOException {
+        List<FeatureMetric> featureMetrics = List.of(feature);
+        String settings = SnippetManifest.settingsOf(featureMetrics, options, truthFile);
+        StringBuilder csv = new StringBuilder("File,Length,Truth").append(System.lineSeparator());
+        try (SnippetManifest manifest = SnippetManifest.open(manifestFile, sourceDir, settings, csvFile)) {
+            Preprocess.collectCSVBody(sourceDir, truthFile, csv, featureMetrics, options, manifest);
+            manifest.save();
+        }
+        Files.writeString(csvFile, csv);
+        return csv.toString();
+    }
+
+    private String runIncremental() throws IOException {
+        return runIncremental(PreprocessOptions.defaults());
+    }
+
+    private static String rows(String... rows) {
+        StringBuilder csv = new StringBuilder("File,Length,Truth").append(System.lineSeparator());
+        for (String row : rows) {
+            csv.append(row).append(System.lineSeparator());
+        }
+        return csv.toString();
+    }
+
+    @Test
+    void testFirstRunComputesAllRows() throws IOException {
+        assertEquals(rows("1.jsnp,1.00,Y", "2.jsnp,2.00,N", "10.jsnp,4.00,Y"), runIncremental());
+        assertEquals(3, feature.computations.get());
+        assertTrue(Files.exists(manifestFile));
+    }
+
+    @Test
+    void testUnchangedSnippetsAreReused() throws IOException {
+        String first = runIncremental();
+        feature.computations.set(0);
+        assertEquals(first, runIncremental());
+        assertEquals(0, feature.computations.get());
+    }
+
+    @Test
+    void testOnlyModifiedAndNewSnippetsAreComputed() throws IOException {
+        runIncremental();
+        feature.computations.set(0);
+        Files.writeString(sourceDir.resolve("2.jsnp"), "bbbbbbb");
+        Files.writeString(sourceDir.resolve("3.jsnp"), "ddd");
+
+        assertEquals(rows("1.jsnp,1.00,Y", "2.jsnp,7.00,N", "3.jsnp,3.00,N", "10.jsnp,4.00,Y"), runIncremental());
+        assertEquals(2, feature.computations.get());
+    }
+
+    @Test
+    void testUnchangedSnippetsWithoutRowAreNotComputedAgain() throws IOException {
+        Files.writeString(sourceDir.resolve("2.jsnp"), "!bb");
+        assertEquals(rows("1.jsnp,1.00,Y", "10.jsnp,4.00,Y"), runIncremental());
+        feature.computations.set(0);
+
+        assertEquals(rows("1.jsnp,1.00,Y", "10.jsnp,4.00,Y"), runIncremental());
+        assertEquals(0, feature.computations.get());
+
+        Files.writeString(sourceDir.resolve("2.jsnp"), "bb");
+        assertEquals(rows("1.jsnp,1.00,Y", "2.jsnp,2.00,N", "10.jsnp,4.00,Y"), runIncremental());
+        assertEquals(1, feature.computations.get());
+    }
+
+    @Test
+    void testSnippetsWithoutTruthScoreAreNotRecorded() throws IOException {
+        Files.writeString(sourceDir.resolve("11.jsnp"), "e");
+        runIncremental();
+        try (SnippetManifest manifest = SnippetManifest.open(manifestFile, sourceDir,
+                SnippetManifest.settingsOf(List.of(feature), PreprocessOptions.defaults(), truthFile), csvFile)) {
+            assertFalse(manifest.isUnchanged(sourceDir.resolve("11.jsnp"), false));
+            assertTrue(manifest.isUnchanged(sourceDir.resolve("10.jsnp"), true));
+            assertFalse(manifest.isUnchanged(sourceDir.resolve("1.jsnp"), false));
+        }
+    }
+
+    @Test
+    void testRowsOfDeletedSnippetsAreDropped() throws IOException {
+        runIncremental();
+        Files.delete(sourceDir.resolve("2.jsnp"));
+        assertEquals(rows("1.jsnp,1.00,Y", "10.jsnp,4.00,Y"), runIncremental());
+    }
+
+    @Test
+    void testTouchedButUnchangedSnippetIsReused() throws IOException {
+        runIncremental();
+        feature.computations.set(0);
+        Path snippet = sourceDir.resolve("1.jsnp");
+        Files.setLastModifiedTime(snippet, FileTime.fromMillis(Files.getLastModifiedTime(snippet).toMillis() + 60_000));
+
+        runIncremental();
+        assertEquals(0, feature.computations.get());
+    }
+
+    @Test
+    void testSameSizeDifferentContentIsRecomputed() throws IOException {
+        runIncremental();
+        Path snippet = sourceDir.resolve("2.jsnp");
+        FileTime lastModified = Files.getLastModifiedTime(snippet);
+        Files.writeString(snippet, "xy");
+        Files.setLastModifiedTime(snippet, FileTime.fromMillis(lastModified.toMillis() + 60_000));
+        feature.computations.set(0);
+
+        runIncremental();
+        assertEquals(1, feature.computations.get());
+    }
+
+    @Test
+    void testChangedSettingsRecomputeAllRows() throws IOException {
+        runIncremental();
+        feature.computations.set(0);
+        assertEquals(rows("1.jsnp,1.000,Y", "2.jsnp,2.000,N", "10.jsnp,4.000,Y"),
+                runIncremental(PreprocessOptions.defaults().withPrecision(3)));
+        assertEquals(3, feature.computations.get());
+    }
+
+    @Test
+    void testRowMissingFromCsvIsRecomputed() throws IOException {
+        runIncremental();
+        Files.writeString(csvFile, rows("1.jsnp,1.00,Y", "10.jsnp,4.00,Y"));
+        feature.computations.set(0);
+
+        assertEquals(rows("1.jsnp,1.00,Y", "2.jsnp,2.00,N", "10.jsnp,4.00,Y"), runIncremental());
+        assertEquals(1, feature.computations.get());
+    }
+
+    @Test
+    void testParallelRunReusesRowsInOrder() throws IOException {
+        String first = runIncremental();
+        feature.computations.set(0);
+        assertEquals(first, runIncremental(PreprocessOptions.defaults().withThreads(4)));
+        assertEquals(0, feature.computations.get());
+    }
+
+    @Test
+    void testRowsOfDeletedSnippetsArePassedOver() throws IOException {
+        Files.writeString(sourceDir.resolve("3.jsnp"), "ddd");
+        Files.writeString(sourceDir.resolve("4.jsnp"), "eeeee");
+        runIncremental();
+        Files.delete(sourceDir.resolve("2.jsnp"));
+        Files.delete(sourceDir.resolve("3.jsnp"));
+        feature.computations.set(0);
+
+        assertEquals(rows("1.jsnp,1.00,Y", "4.jsnp,5.00,N", "10.jsnp,4.00,Y"), runIncremental());
+        assertEquals(0, feature.computations.get());
+    }
+
+    @Test
+    void testUnsortedCsvRowsAreRecomputed() throws IOException {
+        runIncremental();
+        Files.writeString(csvFile, rows("10.jsnp,4.00,Y", "2.jsnp,2.00,N", "1.jsnp,1.00,Y"));
+        feature.computations.set(0);
+
+        assertEquals(rows("1.jsnp,1.00,Y", "2.jsnp,2.00,N", "10.jsnp,4.00,Y"), runIncremental());
+        assertEquals(2, feature.computations.get());
+    }
+
+    @Test
+    void testTokenEntropyModesHaveDifferentSettings() throws IOException {
+        PreprocessOptions options = PreprocessOptions.defaults();
+        assertNotEquals(SnippetManifest.settingsOf(List.of(new TokenEntropyFeature()), options, truthFile),
+                SnippetManifest.settingsOf(List.of(new TokenEntropyFeature(true)), options, truthFile));
+    }
+
+    @Test
+    void testRowsOverTheTimeLimitAreRecomputed() throws IOException {
+        FeatureMetric slowFeature = new LengthFeature() {
+            @Override
+            public double computeMetric(String codeSnippet) {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.computeMetric(codeSnippet);
+            }
+        };
+        PreprocessOptions options = PreprocessOptions.defaults().withLimits(SnippetLimits.none().withMaxMillis(1));
+        List<FeatureMetric> featureMetrics = List.of(slowFeature, feature);
+        String settings = SnippetManifest.settingsOf(featureMetrics, options, truthFile);
+        for (int run = 0; run < 2; run++) {
+            feature.computations.set(0);
+            StringBuilder csv = new StringBuilder("File,Slow,Length,Truth").append(System.lineSeparator());
+            try (SnippetManifest manifest = SnippetManifest.open(manifestFile, sourceDir, settings, csvFile)) {
+                Preprocess.collectCSVBody(sourceDir, truthFile, csv, featureMetrics, options, manifest);
+                manifest.save();
+                assertEquals(0, manifest.size());
+            }
+            Files.writeString(csvFile, csv);
+            assertTrue(csv.toString().contains("1.jsnp,?,?,Y"));
+        }
+    }
+
+    @Test
+    void testRowsOverTheSizeLimitAreReused() throws IOException {
+        PreprocessOptions options = PreprocessOptions.defaults().withLimits(SnippetLimits.none().withMaxCharacters(3));
+        String first = runIncremental(options);
+        assertTrue(first.contains("10.jsnp,?,Y"));
+        feature.computations.set(0);
+        assertEquals(first, runIncremental(options));
+        assertEquals(0, feature.computations.get());
+    }
+
+    @Test
+    void testForeignManifestIsRejected() throws IOException {
+        runIncremental();
+        Files.writeString(manifestFile, "not a manifest");
+        assertThrows(IOException.class, () -> SnippetManifest.open(manifestFile, sourceDir, "", csvFile));
+    }
+}
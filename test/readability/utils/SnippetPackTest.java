@@ -0,0 +1,96 @@
+package readability.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnippetPackTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testPackedSnippetsMatchFiles() throws IOException {
+        Path snippets = Paths.get("resources/snippets");
+        Path packFile = tempDir.resolve("snippets.pack");
+        assertEquals(200, SnippetPack.write(snippets, packFile, 2));
+
+        SnippetPack pack = SnippetPack.open(packFile);
+        List<Path> sortedFiles = SnippetWalker.findSnippetFiles(snippets, 1);
+        assertEquals(sortedFiles.size(), pack.size());
+        for (int i = 0; i < pack.size(); i++) {
+            assertEquals(sortedFiles.get(i).getFileName().toString(), pack.getFileName(i));
+            assertEquals(Files.readString(sortedFiles.get(i)), pack.read(i));
+        }
+    }
+
+    @Test
+    void testSnippetsSpanningSegmentsAreDecoded() throws IOException {
+        Path snippets = Paths.get("resources/snippets");
+        Path packFile = tempDir.resolve("snippets.pack");
+        SnippetPack.write(snippets, packFile, 1);
+
+        // Tiny segments make most snippets span several mappings.
+        SnippetPack pack = SnippetPack.open(packFile, 64);
+        List<Path> sortedFiles = SnippetWalker.findSnippetFiles(snippets, 1);
+        for (int i = 0; i < pack.size(); i++) {
+            assertEquals(Files.readString(sortedFiles.get(i)), pack.read(i));
+        }
+    }
+
+    @Test
+    void testNestedSnippetsKeepTheirPath() throws IOException {
+        Path source = Files.createDirectories(tempDir.resolve("source/a"));
+        Files.writeString(source.resolve("2.jsnp"), "int ü;");
+        Files.writeString(tempDir.resolve("source/1.jsnp"), "");
+        Path packFile = tempDir.resolve("nested.pack");
+        SnippetPack.write(tempDir.resolve("source"), packFile, 1);
+
+        SnippetPack pack = SnippetPack.open(packFile);
+        assertEquals(2, pack.size());
+        assertEquals("1.jsnp", pack.getName(0));
+        assertEquals("", pack.read(0));
+        assertEquals("a/2.jsnp", pack.getName(1));
+        assertEquals("2.jsnp", pack.getFileName(1));
+        assertEquals("int ü;", pack.read(1));
+    }
+
+    @Test
+    void testEmptyDirectoryGivesEmptyPack() throws IOException {
+        Path packFile = tempDir.resolve("empty.pack");
+        assertEquals(0, SnippetPack.write(Files.createDirectory(tempDir.resolve("empty")), packFile, 1));
+        assertEquals(0, SnippetPack.open(packFile).size());
+    }
+
+    @Test
+    void testMalformedUtf8IsRejected() throws IOException {
+        Path source = Files.createDirectory(tempDir.resolve("source"));
+        Files.write(source.resolve("1.jsnp"), new byte[]{(byte) 0xff, 'a'});
+        Path packFile = tempDir.resolve("bad.pack");
+        SnippetPack.write(source, packFile, 1);
+        assertThrows(CharacterCodingException.class, () -> SnippetPack.open(packFile).read(0));
+    }
+
+    @Test
+    void testForeignFileIsRejected() throws IOException {
+        Path packFile = Files.writeString(tempDir.resolve("foreign.pack"), "File,Truth\n1.jsnp,Y\n");
+        assertThrows(IOException.class, () -> SnippetPack.open(packFile));
+        Path tooShort = Files.writeString(tempDir.resolve("short.pack"), "RS");
+        assertThrows(IOException.class, () -> SnippetPack.open(tooShort));
+    }
+
+    @Test
+    void testIsPack() throws IOException {
+        assertTrue(SnippetPack.isPack(Files.writeString(tempDir.resolve("a.PACK"), "")));
+        assertFalse(SnippetPack.isPack(tempDir.resolve("missing.pack")));
+        assertFalse(SnippetPack.isPack(Files.createDirectory(tempDir.resolve("dir.pack"))));
+    }
+}
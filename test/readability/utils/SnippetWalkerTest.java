@@ -0,0 +1,102 @@
+package readability.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnippetWalkerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<String> relativePaths(Path root, List<Path> files) {
+        List<String> paths = new ArrayList<>();
+        for (Path file : files) {
+            paths.add(root.relativize(file).toString().replace(File.separatorChar, '/'));
+        }
+        return paths;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void testSnippetsAreSortedByNumber(int threads) throws IOException {
+        for (String name : new String[]{"10.jsnp", "2.jsnp", "1.jsnp", "100.JSNP", "notes.txt"}) {
+            Files.writeString(tempDir.resolve(name), "");
+        }
+        assertEquals(List.of("1.jsnp", "2.jsnp", "10.jsnp", "100.JSNP"),
+                relativePaths(tempDir, SnippetWalker.findSnippetFiles(tempDir, threads)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void testSubdirectoriesAreSearched(int threads) throws IOException {
+        Path nested = Files.createDirectories(tempDir.resolve("a/b"));
+        Files.createDirectories(tempDir.resolve("c.jsnp.d"));
+        Files.writeString(tempDir.resolve("3.jsnp"), "");
+        Files.writeString(nested.resolve("2.jsnp"), "");
+        Files.writeString(tempDir.resolve("a/1.jsnp"), "");
+        Files.writeString(tempDir.resolve("c.jsnp.d/4.jsnp"), "");
+        assertEquals(List.of("a/1.jsnp", "a/b/2.jsnp", "3.jsnp", "c.jsnp.d/4.jsnp"),
+                relativePaths(tempDir, SnippetWalker.findSnippetFiles(tempDir, threads)));
+    }
+
+    @Test
+    void testNonNumericNamesAreSortedAfterNumbers() throws IOException {
+        for (String name : new String[]{"b.jsnp", "10.jsnp", "a.jsnp", "9.jsnp"}) {
+            Files.writeString(tempDir.resolve(name), "");
+        }
+        assertEquals(List.of("9.jsnp", "10.jsnp", "a.jsnp", "b.jsnp"),
+                relativePaths(tempDir, SnippetWalker.findSnippetFiles(tempDir, 1)));
+    }
+
+    @Test
+    void testEqualNumbersAreOrderedByName() throws IOException {
+        Files.createDirectories(tempDir.resolve("x"));
+        Files.writeString(tempDir.resolve("x/001.jsnp"), "");
+        Files.writeString(tempDir.resolve("01.jsnp"), "");
+        Files.writeString(tempDir.resolve("1.jsnp"), "");
+        assertEquals(List.of("x/001.jsnp", "01.jsnp", "1.jsnp"),
+                relativePaths(tempDir, SnippetWalker.findSnippetFiles(tempDir, 1)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void testEquallyNamedSnippetsAreRejected(int threads) throws IOException {
+        Files.createDirectories(tempDir.resolve("a"));
+        Files.createDirectories(tempDir.resolve("b"));
+        Files.writeString(tempDir.resolve("a/5.jsnp"), "int a;");
+        Files.writeString(tempDir.resolve("b/5.jsnp"), "int b;");
+        IOException e = assertThrows(IOException.class, () -> SnippetWalker.findSnippetFiles(tempDir, threads));
+        assertTrue(e.getMessage().contains("5.jsnp"));
+    }
+
+    @Test
+    void testEmptyDirectory() throws IOException {
+        assertTrue(SnippetWalker.findSnippetFiles(tempDir, 2).isEmpty());
+    }
+
+    @Test
+    void testMissingDirectoryThrows() {
+        assertThrows(IOException.class, () -> SnippetWalker.findSnippetFiles(tempDir.resolve("missing"), 1));
+        assertThrows(IOException.class, () -> SnippetWalker.findSnippetFiles(tempDir.resolve("missing"), 4));
+    }
+
+    @Test
+    void testParallelListingMatchesSequentialListing() throws IOException {
+        Path snippets = Paths.get("resources/snippets");
+        List<Path> sequential = SnippetWalker.findSnippetFiles(snippets, 1);
+        assertEquals(200, sequential.size());
+        assertEquals(sequential, SnippetWalker.findSnippetFiles(snippets, 8));
+    }
+}
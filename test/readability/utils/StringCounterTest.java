@@ -0,0 +1,69 @@
+package readability.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringCounterTest {
+
+    @Test
+    void testCountsMatchAMap() {
+        StringCounter counter = new StringCounter();
+        Map<String, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+        // Enough distinct strings to grow the table several times.
+        for (int i = 0; i < 5_000; i++) {
+            String key = "operand" + random.nextInt(1_000);
+            counter.add(key);
+            expected.merge(key, 1, Integer::sum);
+        }
+
+        assertEquals(expected, counter.toMap());
+        assertEquals(expected.size(), counter.size());
+        assertEquals(5_000, counter.total());
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), counter.get(entry.getKey()));
+        }
+        assertEquals(0, counter.get("missing"));
+    }
+
+    @Test
+    void testEqualStringsAreCountedTogether() {
+        StringCounter counter = new StringCounter();
+        counter.add("null");
+        counter.add(new String("null"));
+        // Strings with the same hash code.
+        counter.add("Aa");
+        counter.add("BB");
+        assertEquals(2, counter.get("null"));
+        assertEquals(1, counter.get("Aa"));
+        assertEquals(1, counter.get("BB"));
+        assertEquals(3, counter.size());
+        assertEquals(4, counter.total());
+    }
+
+    @Test
+    void testResetForgetsAllStrings() {
+        StringCounter counter = new StringCounter();
+        for (int i = 0; i < 100; i++) {
+            counter.add("x" + i);
+        }
+        counter.reset();
+        assertEquals(0, counter.size());
+        assertEquals(0, counter.total());
+        assertEquals(0, counter.get("x1"));
+        assertTrue(counter.toMap().isEmpty());
+
+        counter.add("x1");
+        assertEquals(1, counter.get("x1"));
+    }
+
+    @Test
+    void testNullIsRejected() {
+        assertThrows(NullPointerException.class, () -> new StringCounter().add(null));
+    }
+}
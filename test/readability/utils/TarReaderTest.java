@@ -0,0 +1,147 @@
+package readability.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TarReaderTest {
+
+    /**
+     * Writes tar archives the way GNU tar and pax do, so the tests do not depend on a tar tool.
+     */
+    static class TarWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        TarWriter add(String name, String content) throws IOException {
+            return add(name, '0', content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        TarWriter addDirectory(String name) throws IOException {
+            return add(name, '5', new byte[0]);
+        }
+
+        TarWriter addLongName(String name, String content) throws IOException {
+            add("././@LongLink", 'L', (name + "\0").getBytes(StandardCharsets.UTF_8));
+            return add(name.substring(0, 99), content);
+        }
+
+        TarWriter addPaxPath(String name, String content) throws IOException {
+            String record = " path=" + name + "\n";
+            int length = record.length() + 1;
+            while (String.valueOf(length).length() + record.length() != length) {
+                length++;
+            }
+            add("PaxHeaders/x", 'x', (length + record).getBytes(StandardCharsets.UTF_8));
+            return add("truncated-name", content);
+        }
+
+        TarWriter add(String name, char type, byte[] content) throws IOException {
+            byte[] header = new byte[512];
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, 100));
+            putOctal(header, 100, 8, 0644);
+            putOctal(header, 124, 12, content.length);
+            header[156] = (byte) type;
+            System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+            Arrays.fill(header, 148, 156, (byte) ' ');
+            int checksum = 0;
+            for (byte b : header) {
+                checksum += b & 0xff;
+            }
+            putOctal(header, 148, 8, checksum);
+            out.write(header);
+            out.write(content);
+            out.write(new byte[(512 - content.length % 512) % 512]);
+            return this;
+        }
+
+        private static void putOctal(byte[] header, int offset, int length, long value) {
+            String octal = String.format("%0" + (length - 1) + "o", value);
+            System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+        }
+
+        byte[] toByteArray() {
+            out.writeBytes(new byte[1024]);
+            return out.toByteArray();
+        }
+
+        byte[] toGzipByteArray() throws IOException {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(toByteArray());
+            }
+            return compressed.toByteArray();
+        }
+    }
+
+    private static List<String> readAll(byte[] archive) throws IOException {
+        List<String> entries = new ArrayList<>();
+        try (TarReader tar = new TarReader(new ByteArrayInputStream(archive), name -> name.endsWith(".jsnp"))) {
+            for (TarReader.Entry entry = tar.next(); entry != null; entry = tar.next()) {
+                entries.add(entry.name() + "=" + new String(entry.content(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    void testEntriesAreReadInArchiveOrder() throws IOException {
+        byte[] archive = new TarWriter()
+                .addDirectory("snippets/")
+                .add("snippets/2.jsnp", "int b;")
+                .add("snippets/notes.txt", "not a snippet")
+                .add("snippets/1.jsnp", "x".repeat(600))
+                .toByteArray();
+        assertEquals(List.of("snippets/2.jsnp=int b;", "snippets/1.jsnp=" + "x".repeat(600)), readAll(archive));
+    }
+
+    @Test
+    void testGzipCompressedArchive() throws IOException {
+        byte[] archive = new TarWriter().add("1.jsnp", "int a;").toGzipByteArray();
+        assertEquals(List.of("1.jsnp=int a;"), readAll(archive));
+    }
+
+    @Test
+    void testGnuLongName() throws IOException {
+        String name = "d".repeat(120) + "/1.jsnp";
+        byte[] archive = new TarWriter().addLongName(name, "int a;").toByteArray();
+        assertEquals(List.of(name + "=int a;"), readAll(archive));
+    }
+
+    @Test
+    void testPaxPath() throws IOException {
+        byte[] archive = new TarWriter().addPaxPath("deep/1.jsnp", "int a;").toByteArray();
+        assertEquals(List.of("deep/1.jsnp=int a;"), readAll(archive));
+    }
+
+    @Test
+    void testEmptyArchive() throws IOException {
+        assertEquals(List.of(), readAll(new TarWriter().toByteArray()));
+        assertEquals(List.of(), readAll(new byte[0]));
+    }
+
+    @Test
+    void testTruncatedArchiveThrows() throws IOException {
+        byte[] archive = new TarWriter().add("1.jsnp", "x".repeat(600)).toByteArray();
+        byte[] truncated = Arrays.copyOf(archive, 700);
+        assertThrows(EOFException.class, () -> readAll(truncated));
+    }
+
+    @Test
+    void testMalformedHeaderThrows() {
+        byte[] archive = new byte[512];
+        Arrays.fill(archive, (byte) 'z');
+        assertThrows(IOException.class, () -> readAll(archive));
+    }
+}
@@ -0,0 +1,83 @@
+package readability.utils;
+
+import com.github.javaparser.GeneratedJavaParserConstants;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenHistogramTest {
+
+    /**
+     * The entropy computed over a map of token texts, as the feature did before the histogram.
+     */
+    private static double entropyOfTexts(List<String> texts) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String text : texts) {
+            frequencies.merge(text, 1, Integer::sum);
+        }
+        double entropy = 0.0;
+        for (int frequency : frequencies.values()) {
+            double p = (double) frequency / texts.size();
+            entropy += p * (Math.log(p) / Math.log(2));
+        }
+        return -entropy;
+    }
+
+    private static TokenHistogram histogramOf(String code) {
+        TokenHistogram histogram = new TokenHistogram();
+        Lexer.forEachToken(code, histogram::add);
+        return histogram;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 42, 100, 150, 200})
+    void testEntropyMatchesTextFrequencies(int snippet) throws IOException {
+        String code = Files.readString(Paths.get("resources/snippets/" + snippet + ".jsnp"));
+        List<String> texts = Lexer.tokenize(code);
+        TokenHistogram histogram = histogramOf(code);
+        assertEquals(texts.size(), histogram.total());
+        assertEquals(entropyOfTexts(texts), histogram.entropy(), 1e-12);
+    }
+
+    @Test
+    void testContextualKeywordsShareTheBinOfTheirText() {
+        // 'record' and 'var' may be lexed as keywords or as identifiers, but are one text either way.
+        TokenHistogram histogram = new TokenHistogram();
+        histogram.add(GeneratedJavaParserConstants.RECORD, "record");
+        histogram.add(GeneratedJavaParserConstants.IDENTIFIER, "record");
+        histogram.add(GeneratedJavaParserConstants.IDENTIFIER, "x");
+        histogram.add(GeneratedJavaParserConstants.IDENTIFIER, "x");
+        assertEquals(Map.of("record", 2, "x", 2), histogram.toMap());
+        assertEquals(1.0, histogram.entropy(), 1e-12);
+    }
+
+    @Test
+    void testTokensWithAnUnexpectedTextAreCountedByText() {
+        TokenHistogram histogram = new TokenHistogram();
+        histogram.add(GeneratedJavaParserConstants.GT, ">>");
+        histogram.add(GeneratedJavaParserConstants.RSIGNEDSHIFT, ">>");
+        assertEquals(Map.of(">>", 2), histogram.toMap());
+        assertEquals(0.0, histogram.entropy(), 1e-12);
+    }
+
+    @Test
+    void testResetForgetsAllTokens() {
+        TokenHistogram histogram = histogramOf("int a = b + c;");
+        histogram.reset();
+        assertEquals(0, histogram.total());
+        assertEquals(0.0, histogram.entropy());
+        assertTrue(histogram.toMap().isEmpty());
+
+        Lexer.forEachToken("a a", histogram::add);
+        assertEquals(histogramOf("a a").toMap(), histogram.toMap());
+    }
+}
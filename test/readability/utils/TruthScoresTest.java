@@ -0,0 +1,107 @@
+package readability.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TruthScoresTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File truthFile(String... lines) throws IOException {
+        return Files.write(tempDir.resolve("truth.csv"), List.of(lines)).toFile();
+    }
+
+    @Test
+    void testMeanRowIsUsedWhenPresent() throws IOException {
+        TruthScores scores = TruthScores.load(truthFile(
+                "Rater,Snippet1,Snippet2",
+                "Evaluator1,5,1",
+                "Evaluator2,4,2",
+                "Mean,4.44,1.11"));
+        assertEquals(2, scores.size());
+        assertEquals(4.44, scores.getScore(1));
+        assertEquals(1.11, scores.getScore(2));
+    }
+
+    @Test
+    void testMeanIsComputedWithoutMeanRow() throws IOException {
+        TruthScores scores = TruthScores.load(truthFile(
+                "Rater,Snippet1,Snippet2,Snippet3",
+                "Evaluator1,5,1,2.5",
+                "Evaluator2,4,2,",
+                "Evaluator3,3, 3 ,x"));
+        assertEquals(4.0, scores.getScore(1));
+        assertEquals(2.0, scores.getScore(2));
+        // Empty and malformed ratings are ignored.
+        assertEquals(2.5, scores.getScore(3));
+    }
+
+    @Test
+    void testMedian() throws IOException {
+        File truth = truthFile(
+                "Rater,Snippet1,Snippet2,Snippet3",
+                "Evaluator1,5,1,",
+                "Evaluator2,1,2,",
+                "Evaluator3,4,4,",
+                "Evaluator4,4,",
+                "Mean,3.5,2.33,");
+        TruthScores scores = TruthScores.load(truth, TruthScores.Aggregate.MEDIAN);
+        assertEquals(4.0, scores.getScore(1));
+        assertEquals(2.0, scores.getScore(2));
+        assertTrue(Double.isNaN(scores.getScore(3)));
+    }
+
+    @Test
+    void testEvenNumberOfRatingsAveragesTheMiddleTwo() throws IOException {
+        TruthScores scores = TruthScores.load(truthFile("Rater,Snippet1", "A,1", "B,4", "C,2", "D,5"),
+                TruthScores.Aggregate.MEDIAN);
+        assertEquals(3.0, scores.getScore(1));
+    }
+
+    @Test
+    void testInvalidMeanEntryLeavesSnippetWithoutScore() throws IOException {
+        TruthScores scores = TruthScores.load(truthFile("Header,1,2,10", "Mean,4.0,INVALID,5.0"));
+        assertEquals(4.0, scores.getScore(1));
+        assertTrue(Double.isNaN(scores.getScore(2)));
+        assertTrue(scores.hasScores());
+    }
+
+    @Test
+    void testOutOfRangeSnippetHasNoScore() throws IOException {
+        TruthScores scores = TruthScores.load(truthFile("Header,1", "Mean,3.6"));
+        assertTrue(Double.isNaN(scores.getScore(0)));
+        assertTrue(Double.isNaN(scores.getScore(2)));
+    }
+
+    @Test
+    void testFileWithoutRatingsHasNoScores() throws IOException {
+        assertFalse(TruthScores.load(truthFile("Header,1,2,10")).hasScores());
+        assertFalse(TruthScores.load(truthFile()).hasScores());
+    }
+
+    @Test
+    void testComputedMeansMatchPublishedMeans() throws IOException {
+        File truth = new File("resources/truth_scores.csv");
+        File withoutMean = truthFile(Files.readAllLines(truth.toPath()).stream()
+                .filter(line -> !line.startsWith("Mean"))
+                .collect(Collectors.toList())
+                .toArray(new String[0]));
+
+        TruthScores published = TruthScores.load(truth);
+        TruthScores computed = TruthScores.load(withoutMean);
+        assertEquals(200, computed.size());
+        for (int snippet = 1; snippet <= 200; snippet++) {
+            assertEquals(published.getScore(snippet), computed.getScore(snippet), 0.005, "Snippet" + snippet);
+        }
+    }
+}